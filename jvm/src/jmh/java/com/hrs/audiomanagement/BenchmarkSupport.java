@@ -0,0 +1,63 @@
+package com.hrs.audiomanagement;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link SimulatedDevice} objects for benchmarks.
+ */
+final class BenchmarkSupport {
+    /**
+     * Drops delayed tasks (coalescing flushes, expectation expiries). Benchmarks drive every
+     * callback themselves and never wait for a delay to elapse.
+     */
+    static final class DroppingScheduler implements VolumeSyncEngine.Scheduler {
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+        }
+    }
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * @return a backend tracked by {@link SimulatedIpcProfiler}
+     */
+    static SimulatedAudioBackend newBackend() {
+        return SimulatedIpcProfiler.track(SimulatedDevice.newBackend());
+    }
+
+    static VolumeSyncEngine newEngine(SimulatedAudioBackend backend, JSONObject options) {
+        return SimulatedDevice.newEngine(new DroppingScheduler(), backend, options);
+    }
+
+    /**
+     * @return a sink that consumes every event, and fails the benchmark on errors
+     */
+    static VolumeSubscription.EventSink newEventSink(Blackhole blackhole) {
+        return new VolumeSubscription.EventSink() {
+            @Override
+            public void onVolumeEvent(JSONObject event) {
+                blackhole.consume(event);
+            }
+
+            @Override
+            public void onVolumeEvent(byte[] event) {
+                blackhole.consume(event);
+            }
+
+            @Override
+            public void onVolumeEventError(String errorMessage) {
+                throw new IllegalStateException(errorMessage);
+            }
+
+            @Override
+            public void onSubscriptionEnded() {
+            }
+        };
+    }
+}
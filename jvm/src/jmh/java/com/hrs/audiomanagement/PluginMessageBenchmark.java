@@ -0,0 +1,58 @@
+package com.hrs.audiomanagement;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and sending a listener event, which replaced `makePluginMessage`. The music stream
+ * changes before every event, so delta payloads carry a single stream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PluginMessageBenchmark {
+    @Param({VolumeListenerOptions.PAYLOAD_FULL, VolumeListenerOptions.PAYLOAD_DELTA})
+    public String payload;
+
+    @Param({VolumeListenerOptions.ENCODING_JSON, VolumeListenerOptions.ENCODING_BINARY})
+    public String encoding;
+
+    private VolumeSubscription subscription;
+    private final VolumeSnapshot state = new VolumeSnapshot();
+    private final int[] volumes = new int[Utils.TYPE_COUNT];
+    private int index;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws Exception {
+        SimulatedAudioBackend backend = BenchmarkSupport.newBackend();
+        state.read(backend, SimulatedDevice.newCapabilities(backend));
+        for (int type = 0; type < Utils.TYPE_COUNT; type++) volumes[type] = 50;
+
+        JSONObject options = new JSONObject().put("payload", payload).put("encoding", encoding);
+        subscription = new VolumeSubscription(VolumeListenerOptions.fromJson(options), BenchmarkSupport.newEventSink(blackhole));
+    }
+
+    @Benchmark
+    public boolean publish() {
+        index = (index + 1) & 15;
+        state.set(Utils.TYPE_MUSIC, index);
+        volumes[Utils.TYPE_MUSIC] = index * 100 / 15;
+        return subscription.publish(state, volumes, false, DeviceVolumeMemory.ROUTE_UNKNOWN);
+    }
+}
@@ -0,0 +1,59 @@
+package com.hrs.audiomanagement;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Reports the calls made to the {@link SimulatedAudioBackend}s of a benchmark as `ipc.norm`,
+ * in simulated IPCs per operation, the way `-prof gc` reports allocations per operation.
+ * <p>
+ * Benchmarks register their backends with {@link #track(SimulatedAudioBackend)}. Calls made by a
+ * trial level setup are counted in the first warmup iteration only.
+ */
+public class SimulatedIpcProfiler implements InternalProfiler {
+    private static final List<SimulatedAudioBackend> backends = new CopyOnWriteArrayList<>();
+
+    private long startIpcCount;
+
+    static SimulatedAudioBackend track(SimulatedAudioBackend backend) {
+        backends.add(backend);
+        return backend;
+    }
+
+    private static long totalIpcCount() {
+        long total = 0;
+        for (SimulatedAudioBackend backend : backends) total += backend.getIpcCount();
+        return total;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Simulated audio service IPCs per operation";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        startIpcCount = totalIpcCount();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // Declared with a raw type by InternalProfiler
+    public Collection<? extends Result> afterIteration(
+        BenchmarkParams benchmarkParams,
+        IterationParams iterationParams,
+        IterationResult result
+    ) {
+        long operations = result.getMetadata().getAllOps();
+        double ipcsPerOperation = operations > 0 ? (double) (totalIpcCount() - startIpcCount) / operations : Double.NaN;
+        return List.of(new ScalarResult("ipc.norm", ipcsPerOperation, "ipcs/op", AggregationPolicy.AVG));
+    }
+}
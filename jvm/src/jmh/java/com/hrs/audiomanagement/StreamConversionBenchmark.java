@@ -0,0 +1,49 @@
+package com.hrs.audiomanagement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Percentage <-> index conversions, which replaced `Utils.getVolumePercentage` and
+ * `Utils.setVolumePercentage`: a capabilities lookup plus a table lookup, with no IPC once
+ * the capabilities are cached.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamConversionBenchmark {
+    private SimulatedAudioBackend backend;
+    private StreamCapabilities capabilities;
+    private int value;
+
+    @Setup
+    public void setUp() {
+        backend = BenchmarkSupport.newBackend();
+        capabilities = SimulatedDevice.newCapabilities(backend);
+    }
+
+    @Benchmark
+    public int getVolumePercentage() {
+        value = (value + 1) & 15;
+        return capabilities.get(backend, Utils.TYPE_MUSIC).toPercentage(value);
+    }
+
+    @Benchmark
+    public int setVolumePercentage() {
+        value = (value + 7) % 101;
+        return capabilities.get(backend, Utils.TYPE_MUSIC).toIndex(value);
+    }
+}
@@ -0,0 +1,55 @@
+package com.hrs.audiomanagement;
+
+import android.media.AudioManager;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Change detection of a settings callback, which replaced `VolumeContentObserver.detectVolumeChange`:
+ * one read pass over every stream, diffed against the last known state. Nobody is subscribed,
+ * so detected changes are neither synced nor published.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VolumeChangeDetectionBenchmark {
+    private SimulatedAudioBackend backend;
+    private VolumeSyncEngine engine;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        backend = BenchmarkSupport.newBackend();
+        engine = BenchmarkSupport.newEngine(backend, new JSONObject());
+    }
+
+    /**
+     * A callback for a write that was already adopted, e.g. the echo of a sync.
+     */
+    @Benchmark
+    public void unchangedCallback() {
+        engine.onVolumeSettingsChanged();
+    }
+
+    @Benchmark
+    public void userChange() {
+        index = (index + 1) & 15;
+        backend.injectUserChange(AudioManager.STREAM_MUSIC, index);
+        engine.onVolumeSettingsChanged();
+    }
+}
@@ -0,0 +1,63 @@
+package com.hrs.audiomanagement;
+
+import android.media.AudioManager;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full listener cycle for one key press, which replaced `onChange` -> `syncAllVolumes` ->
+ * `notifyFront`: the user changes music, the engine detects it, syncs the linked streams and
+ * notifies the subscriber, then the callbacks for its own sync writes are delivered and ignored.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VolumeSyncCycleBenchmark {
+    @Param({VolumeListenerOptions.SOURCE_SETTINGS, VolumeListenerOptions.SOURCE_BROADCAST})
+    public String source;
+
+    @Param({VolumeListenerOptions.ENCODING_JSON, VolumeListenerOptions.ENCODING_BINARY})
+    public String encoding;
+
+    private SimulatedAudioBackend backend;
+    private SimulatedEventSource eventSource;
+    private VolumeSyncEngine engine;
+    private int index;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws Exception {
+        backend = BenchmarkSupport.newBackend();
+        eventSource = new SimulatedEventSource(backend, VolumeListenerOptions.SOURCE_BROADCAST.equals(source));
+
+        JSONObject options = new JSONObject().put("source", source).put("encoding", encoding);
+        engine = BenchmarkSupport.newEngine(backend, options);
+        engine.addSubscription(new VolumeSubscription(VolumeListenerOptions.fromJson(options), BenchmarkSupport.newEventSink(blackhole)));
+    }
+
+    /**
+     * Delivers the key press, then the callbacks of the writes it caused.
+     */
+    @Benchmark
+    public int userChange() {
+        index = (index + 1) & 15;
+        backend.injectUserChange(AudioManager.STREAM_MUSIC, index);
+        return eventSource.deliver(engine);
+    }
+}
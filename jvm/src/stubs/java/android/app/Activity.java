@@ -0,0 +1,9 @@
+package android.app;
+
+import android.content.Context;
+
+public class Activity extends Context {
+    public void runOnUiThread(Runnable action) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,10 @@
+package android.app;
+
+public class NotificationManager {
+    public static final String ACTION_NOTIFICATION_POLICY_ACCESS_GRANTED_CHANGED =
+        "android.app.action.NOTIFICATION_POLICY_ACCESS_GRANTED_CHANGED";
+
+    public boolean isNotificationPolicyAccessGranted() {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,14 @@
+package android.content;
+
+import android.database.ContentObserver;
+import android.net.Uri;
+
+public class ContentResolver {
+    public void registerContentObserver(Uri uri, boolean notifyForDescendants, ContentObserver observer) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void unregisterContentObserver(ContentObserver observer) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,42 @@
+package android.content;
+
+import android.os.Handler;
+
+public class Context {
+    public static final String AUDIO_SERVICE = "audio";
+    public static final String NOTIFICATION_SERVICE = "notification";
+    public static final int MODE_PRIVATE = 0;
+    public static final int RECEIVER_NOT_EXPORTED = 4;
+
+    public Object getSystemService(String name) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public Context getApplicationContext() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public ContentResolver getContentResolver() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter, String permission, Handler scheduler) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter, String permission, Handler scheduler, int flags) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void startActivity(Intent intent) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,15 @@
+package android.content;
+
+public class Intent {
+    public Intent(String action) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public String getAction() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public int getIntExtra(String name, int defaultValue) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,11 @@
+package android.content;
+
+public class IntentFilter {
+    public IntentFilter(String action) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void addAction(String action) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,17 @@
+package android.content;
+
+import java.util.Map;
+
+public interface SharedPreferences {
+    Map<String, ?> getAll();
+
+    Editor edit();
+
+    interface Editor {
+        Editor putString(String key, String value);
+
+        Editor remove(String key);
+
+        void apply();
+    }
+}
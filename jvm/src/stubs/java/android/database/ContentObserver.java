@@ -0,0 +1,14 @@
+package android.database;
+
+import android.net.Uri;
+import android.os.Handler;
+
+public abstract class ContentObserver {
+    public ContentObserver(Handler handler) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void onChange(boolean selfChange, Uri uri) {
+        throw new RuntimeException("Stub!");
+    }
+}
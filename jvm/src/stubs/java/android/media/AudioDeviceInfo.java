@@ -0,0 +1,16 @@
+package android.media;
+
+public final class AudioDeviceInfo {
+    public static final int TYPE_WIRED_HEADSET = 3;
+    public static final int TYPE_WIRED_HEADPHONES = 4;
+    public static final int TYPE_BLUETOOTH_SCO = 7;
+    public static final int TYPE_BLUETOOTH_A2DP = 8;
+    public static final int TYPE_USB_DEVICE = 11;
+    public static final int TYPE_USB_HEADSET = 22;
+    public static final int TYPE_HEARING_AID = 23;
+    public static final int TYPE_BLE_HEADSET = 26;
+
+    public int getType() {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,59 @@
+package android.media;
+
+import android.os.Handler;
+
+public class AudioManager {
+    public static final int STREAM_VOICE_CALL = 0;
+    public static final int STREAM_SYSTEM = 1;
+    public static final int STREAM_RING = 2;
+    public static final int STREAM_MUSIC = 3;
+    public static final int STREAM_ALARM = 4;
+    public static final int STREAM_NOTIFICATION = 5;
+    public static final int STREAM_DTMF = 8;
+    public static final int STREAM_ACCESSIBILITY = 10;
+
+    public static final int RINGER_MODE_SILENT = 0;
+    public static final int RINGER_MODE_VIBRATE = 1;
+    public static final int RINGER_MODE_NORMAL = 2;
+
+    public static final int GET_DEVICES_OUTPUTS = 2;
+
+    public static final String RINGER_MODE_CHANGED_ACTION = "android.media.RINGER_MODE_CHANGED";
+    public static final String EXTRA_RINGER_MODE = "android.media.EXTRA_RINGER_MODE";
+
+    public int getStreamVolume(int streamType) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public int getStreamMaxVolume(int streamType) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public int getStreamMinVolume(int streamType) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void setStreamVolume(int streamType, int index, int flags) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public int getRingerMode() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void setRingerMode(int ringerMode) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public AudioDeviceInfo[] getDevices(int flags) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void registerAudioDeviceCallback(AudioDeviceCallback callback, Handler handler) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void unregisterAudioDeviceCallback(AudioDeviceCallback callback) {
+        throw new RuntimeException("Stub!");
+    }
+}
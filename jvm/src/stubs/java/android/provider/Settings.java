@@ -0,0 +1,12 @@
+package android.provider;
+
+import android.net.Uri;
+
+public final class Settings {
+    public static final String ACTION_NOTIFICATION_POLICY_ACCESS_SETTINGS =
+        "android.settings.NOTIFICATION_POLICY_ACCESS_SETTINGS";
+
+    public static final class System {
+        public static final Uri CONTENT_URI = null;
+    }
+}
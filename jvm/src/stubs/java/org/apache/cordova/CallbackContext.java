@@ -0,0 +1,25 @@
+package org.apache.cordova;
+
+import org.json.JSONObject;
+
+public class CallbackContext {
+    public void success() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void success(String message) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void success(JSONObject message) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void error(String message) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void sendPluginResult(PluginResult pluginResult) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,7 @@
+package org.apache.cordova;
+
+import android.app.Activity;
+
+public interface CordovaInterface {
+    Activity getActivity();
+}
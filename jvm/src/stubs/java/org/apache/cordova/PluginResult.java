@@ -0,0 +1,31 @@
+package org.apache.cordova;
+
+import org.json.JSONObject;
+
+public class PluginResult {
+    public enum Status {
+        NO_RESULT,
+        OK,
+        ERROR
+    }
+
+    public PluginResult(Status status) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public PluginResult(Status status, String message) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public PluginResult(Status status, JSONObject message) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public PluginResult(Status status, byte[] data) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void setKeepCallback(boolean keepCallback) {
+        throw new RuntimeException("Stub!");
+    }
+}
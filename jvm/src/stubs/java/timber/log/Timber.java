@@ -0,0 +1,27 @@
+package timber.log;
+
+/**
+ * Drops every log, so that logging does not skew benchmarks.
+ */
+public final class Timber {
+    public static void v(String message, Object... args) {
+    }
+
+    public static void d(String message, Object... args) {
+    }
+
+    public static void i(String message, Object... args) {
+    }
+
+    public static void w(String message, Object... args) {
+    }
+
+    public static void w(Throwable t, String message, Object... args) {
+    }
+
+    public static void e(String message, Object... args) {
+    }
+
+    public static void e(Throwable t, String message, Object... args) {
+    }
+}
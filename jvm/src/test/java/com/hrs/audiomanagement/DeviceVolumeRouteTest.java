@@ -0,0 +1,109 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import android.media.AudioManager;
+
+import org.json.JSONObject;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * The stream changes the OS makes when switching output devices must be handled as route
+ * changes, whether they are delivered before or after the device callback.
+ */
+class DeviceVolumeRouteTest {
+    private SimulatedAudioBackend backend;
+    private SimulatedEventSource eventSource;
+    private ManualScheduler scheduler;
+    private VolumeSyncEngine engine;
+    private RecordingEventSink sink;
+    // Route the OS is on, the engine reads it when it sees a stream change
+    private int osRoute = DeviceVolumeMemory.ROUTE_SPEAKER;
+
+    private void setUp(String source) throws Exception {
+        backend = SimulatedDevice.newBackend();
+        eventSource = new SimulatedEventSource(backend, VolumeListenerOptions.SOURCE_BROADCAST.equals(source));
+        scheduler = new ManualScheduler();
+        JSONObject options = new JSONObject().put("source", source).put("rememberDeviceVolumes", true);
+        engine = SimulatedDevice.newEngine(scheduler, backend, () -> osRoute, options, new PluginDiagnostics(new String[0]));
+        sink = new RecordingEventSink();
+        engine.addSubscription(new VolumeSubscription(VolumeListenerOptions.fromJson(options), sink));
+        sink.events.clear();
+    }
+
+    private void pressMusic(int index) {
+        backend.injectUserChange(AudioManager.STREAM_MUSIC, index);
+        eventSource.deliver(engine);
+    }
+
+    /**
+     * Switches the OS to `route`, which applies `musicIndex` to music, then delivers the stream
+     * callbacks before the device callback.
+     */
+    private void switchRoute(int route, int musicIndex) {
+        osRoute = route;
+        backend.injectUserChange(AudioManager.STREAM_MUSIC, musicIndex);
+        eventSource.deliver(engine);
+        engine.onRouteChanged(route);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {VolumeListenerOptions.SOURCE_SETTINGS, VolumeListenerOptions.SOURCE_BROADCAST})
+    void switchReportedBeforeDeviceCallbackIsNotAUserChange(String source) throws Exception {
+        setUp(source);
+        pressMusic(10);
+        int speakerRing = backend.getStreamVolume(AudioManager.STREAM_RING);
+        sink.events.clear();
+
+        switchRoute(DeviceVolumeMemory.ROUTE_WIRED, 4);
+
+        // Reported once, as a route change, and not synced to the other streams
+        assertEquals(1, sink.events.size());
+        assertEquals("wired", sink.last().getString("route"));
+        assertEquals(27, sink.last().getInt("music"));
+        assertEquals(speakerRing, backend.getStreamVolume(AudioManager.STREAM_RING));
+
+        scheduler.advanceBy(1000);
+        pressMusic(6);
+        int wiredRing = backend.getStreamVolume(AudioManager.STREAM_RING);
+        switchRoute(DeviceVolumeMemory.ROUTE_SPEAKER, 10);
+        scheduler.advanceBy(1000);
+
+        // The levels of each route were remembered under that route
+        switchRoute(DeviceVolumeMemory.ROUTE_WIRED, 2);
+        assertEquals(6, backend.getStreamVolume(AudioManager.STREAM_MUSIC));
+        assertEquals(wiredRing, backend.getStreamVolume(AudioManager.STREAM_RING));
+        scheduler.advanceBy(1000);
+        switchRoute(DeviceVolumeMemory.ROUTE_SPEAKER, 3);
+        assertEquals(10, backend.getStreamVolume(AudioManager.STREAM_MUSIC));
+        assertEquals(speakerRing, backend.getStreamVolume(AudioManager.STREAM_RING));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {VolumeListenerOptions.SOURCE_SETTINGS, VolumeListenerOptions.SOURCE_BROADCAST})
+    void switchReportedAfterDeviceCallbackIsNotSynced(String source) throws Exception {
+        setUp(source);
+        pressMusic(10);
+        int speakerRing = backend.getStreamVolume(AudioManager.STREAM_RING);
+        sink.events.clear();
+
+        osRoute = DeviceVolumeMemory.ROUTE_WIRED;
+        engine.onRouteChanged(DeviceVolumeMemory.ROUTE_WIRED);
+        backend.injectUserChange(AudioManager.STREAM_MUSIC, 4);
+        eventSource.deliver(engine);
+
+        assertEquals(2, sink.events.size());
+        assertEquals("wired", sink.events.get(0).getString("route"));
+        assertFalse(sink.last().has("route"));
+        assertEquals(27, sink.last().getInt("music"));
+        assertEquals(speakerRing, backend.getStreamVolume(AudioManager.STREAM_RING));
+
+        // Once the route settled, key presses are synced again
+        scheduler.advanceBy(1000);
+        pressMusic(12);
+        assertEquals(3, sink.events.size());
+        assertEquals(6, backend.getStreamVolume(AudioManager.STREAM_RING));
+    }
+}
@@ -0,0 +1,44 @@
+package com.hrs.audiomanagement;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps preferences in memory, edits are visible once applied like on a device.
+ */
+class InMemorySharedPreferences implements SharedPreferences {
+    private final Map<String, String> values = new HashMap<>();
+
+    @Override
+    public Map<String, ?> getAll() {
+        return new HashMap<>(values);
+    }
+
+    @Override
+    public Editor edit() {
+        return new Editor() {
+            private final Map<String, String> puts = new HashMap<>();
+            private final Map<String, Boolean> removals = new HashMap<>();
+
+            @Override
+            public Editor putString(String key, String value) {
+                puts.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor remove(String key) {
+                removals.put(key, true);
+                return this;
+            }
+
+            @Override
+            public void apply() {
+                values.keySet().removeAll(removals.keySet());
+                values.putAll(puts);
+            }
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package com.hrs.audiomanagement;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps every event sent to a subscriber.
+ */
+class RecordingEventSink implements VolumeSubscription.EventSink {
+    final List<JSONObject> events = new ArrayList<>();
+    final List<byte[]> binaryEvents = new ArrayList<>();
+    final List<String> errors = new ArrayList<>();
+    int endCount;
+
+    @Override
+    public void onVolumeEvent(JSONObject event) {
+        events.add(event);
+    }
+
+    @Override
+    public void onVolumeEvent(byte[] event) {
+        binaryEvents.add(event);
+    }
+
+    @Override
+    public void onVolumeEventError(String errorMessage) {
+        errors.add(errorMessage);
+    }
+
+    @Override
+    public void onSubscriptionEnded() {
+        endCount++;
+    }
+
+    JSONObject last() {
+        return events.get(events.size() - 1);
+    }
+}
@@ -0,0 +1,69 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.app.NotificationManager;
+import android.media.AudioManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The cached ringer mode follows the mode changes the OS makes on its own when the plugin mutes
+ * or unmutes the ring stream, before their broadcast is delivered.
+ */
+class RingerStateCacheTest {
+    private final SimulatedAudioBackend backend = SimulatedDevice.newBackend();
+    private final RingerStateCache cache = new RingerStateCache(backend, new NotificationManager());
+    private final List<Integer> notifiedModes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        backend.injectUserChange(AudioManager.STREAM_RING, 5);
+        cache.setRingerModeListener(notifiedModes::add);
+        cache.setObserving(true);
+        assertEquals(AudioManager.RINGER_MODE_NORMAL, cache.getRingerMode());
+    }
+
+    /**
+     * Same as the plugin's stream writes.
+     */
+    private void writeStreamIndex(int type, int index) {
+        Utils.setStreamIndex(backend, type, index);
+        cache.onStreamWritten(type);
+    }
+
+    @Test
+    void transactionMutingRingThenSettingNormalRestoresNormal() {
+        writeStreamIndex(Utils.TYPE_RING, 0);
+        assertTrue(cache.setRingerMode(AudioManager.RINGER_MODE_NORMAL));
+
+        assertEquals(AudioManager.RINGER_MODE_NORMAL, backend.getRingerMode());
+        assertEquals(AudioManager.RINGER_MODE_NORMAL, cache.getRingerMode());
+        assertEquals(List.of(AudioManager.RINGER_MODE_VIBRATE, AudioManager.RINGER_MODE_NORMAL), notifiedModes);
+    }
+
+    @Test
+    void ringWriteIsReadThrough() {
+        writeStreamIndex(Utils.TYPE_RING, 0);
+
+        assertEquals(AudioManager.RINGER_MODE_VIBRATE, cache.getRingerMode());
+        assertEquals(List.of(AudioManager.RINGER_MODE_VIBRATE), notifiedModes);
+        assertFalse(cache.setRingerMode(AudioManager.RINGER_MODE_VIBRATE));
+    }
+
+    @Test
+    void otherWritesKeepTheCachedMode() {
+        writeStreamIndex(Utils.TYPE_MUSIC, 3);
+        backend.resetCounters();
+
+        assertEquals(AudioManager.RINGER_MODE_NORMAL, cache.getRingerMode());
+        assertEquals(0, backend.getIpcCount());
+        assertTrue(notifiedModes.isEmpty());
+    }
+}
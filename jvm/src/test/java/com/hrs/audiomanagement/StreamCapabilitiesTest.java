@@ -0,0 +1,40 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import android.media.AudioManager;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A stream the OS does not support is probed once, not on every lookup.
+ */
+class StreamCapabilitiesTest {
+    private final SimulatedAudioBackend backend = new SimulatedAudioBackend()
+        .setStreamUnsupported(AudioManager.STREAM_ACCESSIBILITY);
+    private final StreamCapabilities capabilities = new StreamCapabilities();
+
+    @Test
+    void unsupportedStreamIsProbedOnce() {
+        assertNull(capabilities.get(backend, Utils.TYPE_ACCESSIBILITY));
+        backend.resetCounters();
+
+        assertNull(capabilities.get(backend, Utils.TYPE_ACCESSIBILITY));
+        assertEquals(0, backend.getIpcCount());
+    }
+
+    @Test
+    void unsupportedStreamIsProbedAgainOnRefresh() {
+        capabilities.refresh(backend);
+        backend.resetCounters();
+
+        assertNull(capabilities.get(backend, Utils.TYPE_ACCESSIBILITY));
+        assertNotNull(capabilities.get(backend, Utils.TYPE_MUSIC));
+        assertEquals(0, backend.getIpcCount());
+
+        capabilities.refresh(backend);
+        assertEquals(2 * Utils.TYPE_COUNT - 1, backend.getIpcCount());
+    }
+}
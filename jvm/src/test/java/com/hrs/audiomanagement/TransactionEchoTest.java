@@ -0,0 +1,73 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.media.AudioManager;
+
+import org.json.JSONObject;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * The writes of an `executeTransaction` share one programmatic change, so listeners see none of
+ * them, including a stream written several times, and user changes made afterwards are reported.
+ */
+class TransactionEchoTest {
+    private final SimulatedAudioBackend backend = SimulatedDevice.newBackend();
+    private final ManualScheduler scheduler = new ManualScheduler();
+
+    /**
+     * Same as a transaction writing each `{type, index}` pair in turn: streams already at their
+     * target are skipped, like `writeStreamIndex` does.
+     */
+    private void executeTransaction(VolumeSyncEngine engine, int[][] writes) {
+        engine.beginProgrammaticChange();
+        try {
+            for (int[] write : writes) {
+                int type = write[0];
+                int index = write[1];
+                if (index == Utils.getStreamIndex(backend, type)) continue;
+
+                engine.expectStreamIndex(type, index);
+                Utils.setStreamIndex(backend, type, index);
+            }
+        } finally {
+            engine.endProgrammaticChange();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {VolumeListenerOptions.SOURCE_SETTINGS, VolumeListenerOptions.SOURCE_BROADCAST})
+    void transactionIsNotEchoedAndListenersResume(String source) throws Exception {
+        SimulatedEventSource eventSource = new SimulatedEventSource(backend, VolumeListenerOptions.SOURCE_BROADCAST.equals(source));
+        JSONObject options = new JSONObject().put("source", source).put("payload", VolumeListenerOptions.PAYLOAD_DELTA);
+        VolumeSyncEngine engine = SimulatedDevice.newEngine(scheduler, backend, options);
+        RecordingEventSink sink = new RecordingEventSink();
+        engine.addSubscription(new VolumeSubscription(VolumeListenerOptions.fromJson(options), sink));
+
+        executeTransaction(engine, new int[][]{
+            {Utils.TYPE_MUSIC, 5},
+            {Utils.TYPE_ALARM, 4},
+            {Utils.TYPE_MUSIC, 10},
+            {Utils.TYPE_RING, 3}
+        });
+        eventSource.deliver(engine);
+
+        assertEquals(0, sink.events.size(), "transaction echoed: " + sink.events);
+        assertTrue(sink.errors.isEmpty(), sink.errors.toString());
+
+        // Right away, before the transaction's expectations expire
+        backend.injectUserChange(AudioManager.STREAM_MUSIC, 5);
+        eventSource.deliver(engine);
+        assertEquals(1, sink.events.size());
+        assertEquals(33, sink.last().getInt("music"));
+
+        scheduler.advanceBy(1000);
+        eventSource.deliver(engine);
+        backend.injectUserChange(AudioManager.STREAM_ALARM, 7);
+        eventSource.deliver(engine);
+        assertEquals(2, sink.events.size());
+        assertEquals(100, sink.last().getInt("alarm"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.media.AudioManager;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A subscriber using ack flow control has at most one unacknowledged event: changes made
+ * meanwhile collapse into the newest state, which is sent once the event is acknowledged.
+ */
+class VolumeAckFlowControlTest {
+    private final SimulatedAudioBackend backend = SimulatedDevice.newBackend();
+    private final SimulatedEventSource eventSource = new SimulatedEventSource(backend, false);
+    private final PluginDiagnostics diagnostics = new PluginDiagnostics(new String[0]);
+    private VolumeSyncEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // No linked stream, so that events only carry the user's changes
+        JSONObject options = new JSONObject().put("syncPolicy", new JSONObject().put("linked", new JSONArray()));
+        engine = SimulatedDevice.newEngine(new ManualScheduler(), backend, options, diagnostics);
+    }
+
+    private RecordingEventSink subscribe(String id, String flowControl) throws Exception {
+        RecordingEventSink sink = new RecordingEventSink();
+        JSONObject options = new JSONObject()
+            .put("id", id)
+            .put("payload", VolumeListenerOptions.PAYLOAD_DELTA)
+            .put("flowControl", flowControl);
+        engine.addSubscription(new VolumeSubscription(VolumeListenerOptions.fromJson(options), sink));
+        return sink;
+    }
+
+    private void userChange(int streamType, int index) {
+        backend.injectUserChange(streamType, index);
+        eventSource.deliver(engine);
+    }
+
+    @Test
+    void onlyTheNewestStateIsHeldUntilAck() throws Exception {
+        RecordingEventSink acked = subscribe("acked", VolumeListenerOptions.FLOW_CONTROL_ACK);
+        RecordingEventSink unthrottled = subscribe("unthrottled", VolumeListenerOptions.FLOW_CONTROL_NONE);
+
+        userChange(AudioManager.STREAM_MUSIC, 12);
+        userChange(AudioManager.STREAM_MUSIC, 3);
+        userChange(AudioManager.STREAM_ALARM, 7);
+        userChange(AudioManager.STREAM_MUSIC, 9);
+
+        assertEquals(1, acked.events.size());
+        assertEquals(80, acked.last().getInt("music"));
+        assertEquals(4, unthrottled.events.size());
+
+        assertTrue(engine.acknowledgeEvent("acked"));
+        assertEquals(2, acked.events.size());
+        JSONObject released = acked.last();
+        assertEquals(2, released.getInt("seq"));
+        assertEquals(60, released.getInt("music"));
+        assertEquals(100, released.getInt("alarm"));
+        assertEquals(1, diagnostics.toJson().getJSONObject("counters").getInt("heldEventsSent"));
+    }
+
+    @Test
+    void ackWithoutHeldStateSendsNothing() throws Exception {
+        RecordingEventSink acked = subscribe("acked", VolumeListenerOptions.FLOW_CONTROL_ACK);
+
+        userChange(AudioManager.STREAM_MUSIC, 12);
+        assertTrue(engine.acknowledgeEvent("acked"));
+        assertEquals(1, acked.events.size());
+
+        // Acknowledged, so the next change is sent right away
+        userChange(AudioManager.STREAM_MUSIC, 3);
+        assertEquals(2, acked.events.size());
+        assertEquals(20, acked.last().getInt("music"));
+
+        assertFalse(engine.acknowledgeEvent("unknown"));
+    }
+}
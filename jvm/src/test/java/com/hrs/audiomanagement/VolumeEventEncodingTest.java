@@ -0,0 +1,104 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary events follow the layout documented on VolumeSubscription, which the JS layer decodes.
+ */
+class VolumeEventEncodingTest {
+    private final VolumeSnapshot state = new VolumeSnapshot();
+    private final int[] volumes = new int[Utils.TYPE_COUNT];
+    private final RecordingEventSink sink = new RecordingEventSink();
+
+    private VolumeSubscription subscribe(JSONObject options) throws Exception {
+        return new VolumeSubscription(VolumeListenerOptions.fromJson(options.put("encoding", VolumeListenerOptions.ENCODING_BINARY)), sink);
+    }
+
+    private void setStream(int type, int index, int volume) {
+        state.set(type, index);
+        volumes[type] = volume;
+    }
+
+    private static void assertStream(ByteBuffer frame, int index, int volume) {
+        assertEquals(index, frame.getShort() & 0xFFFF);
+        assertEquals(volume, frame.get() & 0xFF);
+    }
+
+    @Test
+    void framesFollowTheLayoutAndAreNumbered() throws Exception {
+        VolumeSubscription subscription = subscribe(new JSONObject().put("payload", VolumeListenerOptions.PAYLOAD_DELTA));
+        setStream(Utils.TYPE_RING, 3, 43);
+        setStream(Utils.TYPE_MUSIC, 12, 80);
+
+        long before = System.currentTimeMillis();
+        assertTrue(subscription.publish(state, volumes, false, DeviceVolumeMemory.ROUTE_UNKNOWN));
+        long after = System.currentTimeMillis();
+
+        // First event: full state of every known stream, by ascending type
+        ByteBuffer full = ByteBuffer.wrap(sink.binaryEvents.get(0));
+        assertEquals(16 + 2 * 3, full.remaining());
+        assertEquals(1, full.get());
+        assertEquals(1, full.get());
+        assertEquals(VolumeSnapshot.bit(Utils.TYPE_RING) | VolumeSnapshot.bit(Utils.TYPE_MUSIC), full.getShort());
+        assertEquals(1, full.getInt());
+        double timestamp = full.getDouble();
+        assertTrue(timestamp >= before && timestamp <= after, "timestamp " + timestamp);
+        assertStream(full, 3, 43);
+        assertStream(full, 12, 80);
+
+        // Delta: only the changed stream
+        setStream(Utils.TYPE_MUSIC, 13, 87);
+        assertTrue(subscription.publish(state, volumes, false, DeviceVolumeMemory.ROUTE_UNKNOWN));
+        ByteBuffer delta = ByteBuffer.wrap(sink.binaryEvents.get(1));
+        assertEquals(16 + 3, delta.remaining());
+        assertEquals(1, delta.get());
+        assertEquals(0, delta.get());
+        assertEquals(VolumeSnapshot.bit(Utils.TYPE_MUSIC), delta.getShort());
+        assertEquals(2, delta.getInt());
+        delta.getDouble();
+        assertStream(delta, 13, 87);
+
+        // Route change without any stream change: empty mask, trailing route byte
+        assertTrue(subscription.publish(state, volumes, false, DeviceVolumeMemory.ROUTE_BLUETOOTH));
+        ByteBuffer route = ByteBuffer.wrap(sink.binaryEvents.get(2));
+        assertEquals(16 + 1, route.remaining());
+        assertEquals(1, route.get());
+        assertEquals(2, route.get());
+        assertEquals(0, route.getShort());
+        assertEquals(3, route.getInt());
+        route.getDouble();
+        assertEquals(DeviceVolumeMemory.ROUTE_BLUETOOTH, route.get());
+
+        // Nothing changed, nothing sent and the sequence does not move
+        assertFalse(subscription.publish(state, volumes, false, DeviceVolumeMemory.ROUTE_UNKNOWN));
+        setStream(Utils.TYPE_RING, 4, 57);
+        assertTrue(subscription.publish(state, volumes, false, DeviceVolumeMemory.ROUTE_UNKNOWN));
+        ByteBuffer next = ByteBuffer.wrap(sink.binaryEvents.get(3));
+        assertEquals(4, next.getInt(4));
+        assertEquals(4, sink.binaryEvents.size());
+        assertTrue(sink.events.isEmpty());
+    }
+
+    @Test
+    void framesOnlyCarryFilteredStreams() throws Exception {
+        VolumeSubscription subscription = subscribe(new JSONObject().put("streams", new JSONArray().put(Utils.TYPE_ALARM)));
+        setStream(Utils.TYPE_MUSIC, 12, 80);
+        setStream(Utils.TYPE_ALARM, 300, 100);
+
+        assertTrue(subscription.publish(state, volumes, false, DeviceVolumeMemory.ROUTE_UNKNOWN));
+        ByteBuffer frame = ByteBuffer.wrap(sink.binaryEvents.get(0));
+        assertEquals(16 + 3, frame.remaining());
+        assertEquals(VolumeSnapshot.bit(Utils.TYPE_ALARM), frame.getShort(2));
+        frame.position(16);
+        // Raw indices are unsigned 16 bit
+        assertStream(frame, 300, 100);
+    }
+}
@@ -0,0 +1,82 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import android.media.AudioManager;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays the volume change feedback loop (key press, sync writes, echo callbacks) on the
+ * simulated audio service.
+ */
+class VolumeFeedbackLoopTest {
+    @Test
+    void simulatorCountsIpcsAndReportsChanges() {
+        SimulatedAudioBackend backend = SimulatedDevice.newBackend();
+        List<int[]> changes = new ArrayList<>();
+        backend.setStreamChangeListener((streamType, index, previousIndex) -> changes.add(new int[]{streamType, index, previousIndex}));
+
+        backend.injectUserChange(AudioManager.STREAM_MUSIC, 20);
+        assertEquals(15, backend.getStreamVolume(AudioManager.STREAM_MUSIC));
+        assertEquals(1, backend.getIpcCount());
+
+        backend.setStreamVolume(AudioManager.STREAM_MUSIC, 15, 0);
+        backend.setStreamVolume(AudioManager.STREAM_MUSIC, 3, 0);
+        assertEquals(3, backend.getIpcCount());
+        assertEquals(1, backend.getWriteCount());
+
+        assertEquals(2, changes.size());
+        assertEquals(List.of(AudioManager.STREAM_MUSIC, 15, 0), List.of(changes.get(0)[0], changes.get(0)[1], changes.get(0)[2]));
+        assertEquals(List.of(AudioManager.STREAM_MUSIC, 3, 15), List.of(changes.get(1)[0], changes.get(1)[1], changes.get(1)[2]));
+
+        backend.resetCounters();
+        assertEquals(0, backend.getIpcCount());
+        assertEquals(0, backend.getWriteCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {VolumeListenerOptions.SOURCE_SETTINGS, VolumeListenerOptions.SOURCE_BROADCAST})
+    void keyPressIsSyncedOnceWithoutStorm(String source) throws Exception {
+        SimulatedAudioBackend backend = SimulatedDevice.newBackend();
+        SimulatedEventSource eventSource = new SimulatedEventSource(backend, VolumeListenerOptions.SOURCE_BROADCAST.equals(source));
+        PluginDiagnostics diagnostics = new PluginDiagnostics(new String[0]);
+        JSONObject options = new JSONObject().put("source", source);
+        VolumeSyncEngine engine = SimulatedDevice.newEngine(new ManualScheduler(), backend, options, diagnostics);
+        RecordingEventSink sink = new RecordingEventSink();
+        engine.addSubscription(new VolumeSubscription(VolumeListenerOptions.fromJson(options), sink));
+        backend.resetCounters();
+
+        boolean isBroadcast = VolumeListenerOptions.SOURCE_BROADCAST.equals(source);
+        backend.injectUserChange(AudioManager.STREAM_MUSIC, 12);
+        eventSource.deliver(engine);
+
+        // Ring, notification, system and voice call follow music, nothing is written twice.
+        // Then the written streams are read back once. The pressed stream is read once per broadcast,
+        // every stream once per observer callback (the press and 4 echoes)
+        assertEquals(4, backend.getWriteCount());
+        assertEquals(isBroadcast ? 1 + 4 + 4 : 4 + 4 + 5 * 8, backend.getIpcCount());
+        assertEquals(0, eventSource.getPendingCount());
+        assertEquals(1, sink.events.size());
+        assertEquals(86, sink.last().getInt("ring"));
+        assertEquals(80, sink.last().getInt("music"));
+        assertEquals(6, backend.getStreamVolume(AudioManager.STREAM_RING));
+        assertEquals(4, backend.getStreamVolume(AudioManager.STREAM_VOICE_CALL));
+        if (isBroadcast) {
+            assertEquals(4, diagnostics.toJson().getJSONObject("counters").getInt("echoesIgnored"));
+        }
+
+        // The next key press is reported as well
+        backend.injectUserChange(AudioManager.STREAM_MUSIC, 3);
+        eventSource.deliver(engine);
+        assertEquals(2, sink.events.size());
+        assertEquals(20, sink.last().getInt("music"));
+        assertEquals(0, eventSource.getPendingCount());
+    }
+}
@@ -0,0 +1,140 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.AudioManager;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * A saved volume profile survives a restart of the plugin and applies both its stream levels
+ * and its ringer mode, without echoing to the volume listener.
+ */
+class VolumeProfileRoundTripTest {
+    // Plugin audio modes, as stored in profiles
+    private static final int SILENT_MODE = 0;
+    private static final int VIBRATE_MODE = 1;
+    private static final int NORMAL_MODE = 2;
+
+    private final SharedPreferences preferences = new InMemorySharedPreferences();
+    private final Context context = new Context() {
+        @Override
+        public SharedPreferences getSharedPreferences(String name, int mode) {
+            return preferences;
+        }
+    };
+    private final SimulatedAudioBackend backend = SimulatedDevice.newBackend();
+    private final SimulatedEventSource eventSource = new SimulatedEventSource(backend, false);
+    private final StreamCapabilities capabilities = SimulatedDevice.newCapabilities(backend);
+    private final RingerStateCache ringerStateCache = new RingerStateCache(backend, new NotificationManager());
+    private final VolumeSyncEngine engine = SimulatedDevice.newEngine(new ManualScheduler(), backend, null);
+    private final RecordingEventSink sink = new RecordingEventSink();
+
+    @BeforeEach
+    void setUp() {
+        backend.injectUserChange(AudioManager.STREAM_RING, 5);
+        eventSource.deliver(engine);
+        ringerStateCache.setObserving(true);
+        engine.addSubscription(new VolumeSubscription(VolumeListenerOptions.fromJson(null), sink));
+    }
+
+    private static JSONObject stream(int type, int volume, boolean scaled) throws Exception {
+        return new JSONObject().put("streamType", type).put("volume", volume).put("scaled", scaled);
+    }
+
+    /**
+     * Same as `applyVolumeProfile`: every stream of the profile is written, then the ringer
+     * mode is set, all in one programmatic change.
+     */
+    private void apply(VolumeProfileStore.Profile profile) {
+        engine.beginProgrammaticChange();
+        try {
+            for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+                int volume = profile.volumes[type];
+                if (volume == VolumeProfileStore.NO_VOLUME) continue;
+
+                StreamCapabilities.Entry entry = capabilities.get(backend, type);
+                int index = profile.isScaled(type) ? entry.toIndex(volume) : volume;
+                if (index == Utils.getStreamIndex(backend, type)) continue;
+
+                engine.expectStreamIndex(type, index);
+                Utils.setStreamIndex(backend, type, index);
+                ringerStateCache.onStreamWritten(type);
+            }
+
+            if (profile.audioMode == VolumeProfileStore.NO_AUDIO_MODE) return;
+
+            int ringerMode = switch (profile.audioMode) {
+                case SILENT_MODE -> AudioManager.RINGER_MODE_SILENT;
+                case VIBRATE_MODE -> AudioManager.RINGER_MODE_VIBRATE;
+                default -> AudioManager.RINGER_MODE_NORMAL;
+            };
+            if (ringerStateCache.setRingerMode(ringerMode)) {
+                for (int type : new int[]{Utils.TYPE_RING, Utils.TYPE_NOTIFICATION}) {
+                    engine.expectStreamIndex(type, Utils.getStreamIndex(backend, type));
+                }
+            }
+        } finally {
+            engine.endProgrammaticChange();
+            eventSource.deliver(engine);
+        }
+    }
+
+    @Test
+    void savedProfileIsReloadedAndApplied() throws Exception {
+        JSONObject config = new JSONObject()
+            .put("audioMode", NORMAL_MODE)
+            .put("streams", new JSONArray()
+                .put(stream(Utils.TYPE_MUSIC, 80, true))
+                .put(stream(Utils.TYPE_ALARM, 3, false))
+                .put(stream(Utils.TYPE_RING, 0, true)));
+        new VolumeProfileStore(context).save(VolumeProfileStore.fromJson("quiet", config));
+
+        // A new store, as after a restart, only sees what was persisted
+        VolumeProfileStore store = new VolumeProfileStore(context);
+        assertEquals(List.of("quiet"), store.list().stream().map(profile -> profile.name).toList());
+        VolumeProfileStore.Profile profile = store.get("quiet");
+        assertNotNull(profile);
+        assertEquals(NORMAL_MODE, profile.audioMode);
+
+        apply(profile);
+
+        assertEquals(12, Utils.getStreamIndex(backend, Utils.TYPE_MUSIC));
+        assertEquals(3, Utils.getStreamIndex(backend, Utils.TYPE_ALARM));
+        assertEquals(0, Utils.getStreamIndex(backend, Utils.TYPE_RING));
+        // Muting ring switched the device to vibrate, the profile's mode is still applied after it
+        assertEquals(AudioManager.RINGER_MODE_NORMAL, backend.getRingerMode());
+        assertEquals(AudioManager.RINGER_MODE_NORMAL, ringerStateCache.getRingerMode());
+        assertTrue(sink.events.isEmpty(), "profile echoed: " + sink.events);
+    }
+
+    @Test
+    void replacedAndDeletedProfilesArePersisted() throws Exception {
+        VolumeProfileStore store = new VolumeProfileStore(context);
+        store.save(VolumeProfileStore.fromJson("night", new JSONObject()
+            .put("streams", new JSONArray().put(stream(Utils.TYPE_MUSIC, 20, true)))));
+        store.save(VolumeProfileStore.fromJson("night", new JSONObject()
+            .put("audioMode", SILENT_MODE)
+            .put("streams", new JSONArray().put(stream(Utils.TYPE_MUSIC, 40, true)))));
+        store.save(VolumeProfileStore.fromJson("day", new JSONObject().put("streams", new JSONArray())));
+        assertTrue(store.delete("day"));
+
+        VolumeProfileStore reloaded = new VolumeProfileStore(context);
+        assertEquals(List.of("night"), reloaded.list().stream().map(profile -> profile.name).toList());
+        apply(reloaded.get("night"));
+
+        assertEquals(6, Utils.getStreamIndex(backend, Utils.TYPE_MUSIC));
+        assertEquals(AudioManager.RINGER_MODE_SILENT, backend.getRingerMode());
+        assertTrue(sink.events.isEmpty(), "profile echoed: " + sink.events);
+    }
+}
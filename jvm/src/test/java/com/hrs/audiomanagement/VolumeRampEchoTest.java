@@ -0,0 +1,186 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.media.AudioManager;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ramp steps must not be reported by the listener as user changes, whenever their callbacks
+ * are delivered, and a completed ramp is reported once. Ramps follow the wall clock, so these
+ * tests run in real time.
+ */
+class VolumeRampEchoTest {
+    private static final long RAMP_DURATION_MS = 150;
+
+    private SimulatedAudioBackend backend;
+    private SimulatedEventSource eventSource;
+    private ManualScheduler scheduler;
+    private VolumeSyncEngine engine;
+    private VolumeRamper ramper;
+    private RecordingEventSink sink;
+    private boolean finished;
+
+    private void setUp(String source) throws Exception {
+        backend = SimulatedDevice.newBackend();
+        eventSource = new SimulatedEventSource(backend, VolumeListenerOptions.SOURCE_BROADCAST.equals(source));
+        scheduler = new ManualScheduler();
+        JSONObject options = new JSONObject().put("source", source);
+        engine = SimulatedDevice.newEngine(scheduler, backend, options);
+        sink = new RecordingEventSink();
+        engine.addSubscription(new VolumeSubscription(VolumeListenerOptions.fromJson(options), sink));
+        // Same as AudioManagement.writeRampStep()
+        ramper = new VolumeRamper(scheduler, (type, oldIndex, index) -> {
+            engine.beginProgrammaticChange();
+            engine.expectStreamIndex(type, index);
+            Utils.setStreamIndex(backend, type, index);
+            engine.adoptStreamIndex(type, index);
+        });
+    }
+
+    private void startRamp() {
+        startRamp(15);
+    }
+
+    private void startRamp(int targetIndex) {
+        ramper.start(
+            new int[]{Utils.TYPE_MUSIC},
+            new int[]{backend.getStreamVolume(AudioManager.STREAM_MUSIC)},
+            new int[]{targetIndex},
+            RAMP_DURATION_MS,
+            VolumeRamper.CURVE_LINEAR,
+            (types, indices, completed) -> {
+                // Same as AudioManagement.notifyRampFinished()
+                if (completed) engine.publishProgrammaticChange();
+                finished = true;
+            }
+        );
+        // Set after starting, a replaced ramp finishes while the new one starts
+        finished = false;
+    }
+
+    private void waitForRamp() throws InterruptedException {
+        while (!finished) {
+            Thread.sleep(5);
+            scheduler.advanceBy(5);
+        }
+    }
+
+    /**
+     * Runs the ramp to completion, delivering the callbacks of each step either right away or
+     * only once the ramp finished (stale callbacks).
+     */
+    private void runRamp(boolean delayCallbacks) throws InterruptedException {
+        startRamp();
+        while (!finished) {
+            Thread.sleep(5);
+            scheduler.advanceBy(5);
+            if (!delayCallbacks) eventSource.deliver(engine);
+        }
+        eventSource.deliver(engine);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"settings, false", "settings, true", "broadcast, false", "broadcast, true"})
+    void rampIsReportedOnceCompleted(String source, boolean delayCallbacks) throws Exception {
+        setUp(source);
+
+        runRamp(delayCallbacks);
+
+        assertEquals(15, backend.getStreamVolume(AudioManager.STREAM_MUSIC));
+        assertEquals(1, sink.events.size(), "ramp steps reported: " + sink.events);
+        assertEquals(100, sink.last().getInt("music"));
+        // The steps were not synced to the other streams
+        assertEquals(0, backend.getStreamVolume(AudioManager.STREAM_RING));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"settings", "broadcast"})
+    void userChangeDuringRampIsReported(String source) throws Exception {
+        setUp(source);
+        startRamp();
+
+        backend.injectUserChange(AudioManager.STREAM_ALARM, 5);
+        waitForRamp();
+        eventSource.deliver(engine);
+
+        // The completion, then the user change
+        assertEquals(2, sink.events.size());
+        assertEquals(100, sink.events.get(0).getInt("music"));
+        assertEquals(71, sink.last().getInt("alarm"));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"settings", "broadcast"})
+    void cancelledAndReplacedRampsAreNotReported(String source) throws Exception {
+        setUp(source);
+
+        startRamp();
+        Thread.sleep(RAMP_DURATION_MS / 2);
+        scheduler.advanceBy(RAMP_DURATION_MS / 2);
+        ramper.cancelAll();
+        eventSource.deliver(engine);
+        assertTrue(finished);
+        assertTrue(sink.events.isEmpty(), "cancelled ramp reported: " + sink.events);
+
+        startRamp(15);
+        Thread.sleep(RAMP_DURATION_MS / 2);
+        scheduler.advanceBy(RAMP_DURATION_MS / 2);
+        startRamp(3);
+        assertTrue(sink.events.isEmpty(), "replaced ramp reported: " + sink.events);
+
+        waitForRamp();
+        eventSource.deliver(engine);
+        assertEquals(3, backend.getStreamVolume(AudioManager.STREAM_MUSIC));
+        assertEquals(1, sink.events.size());
+        assertEquals(20, sink.last().getInt("music"));
+    }
+
+    /**
+     * The completion is sent once to every subscriber, in its own payload and encoding.
+     */
+    @Test
+    void completionHonoursEachSubscription() throws Exception {
+        setUp(VolumeListenerOptions.SOURCE_SETTINGS);
+        RecordingEventSink delta = subscribe(new JSONObject().put("id", "delta").put("payload", "delta"));
+        RecordingEventSink binary = subscribe(new JSONObject().put("id", "binary").put("payload", "delta").put("encoding", "binary"));
+        // Delta subscribers start with a full event
+        engine.requestVolumeChangeToListener(true);
+        eventSource.deliver(engine);
+        sink.events.clear();
+        delta.events.clear();
+        binary.binaryEvents.clear();
+
+        runRamp(false);
+
+        assertEquals(1, sink.events.size());
+        assertEquals(100, sink.last().getInt("music"));
+        assertTrue(sink.last().has("ring"));
+
+        assertEquals(1, delta.events.size());
+        JSONObject event = delta.last();
+        assertEquals(100, event.getInt("music"));
+        assertFalse(event.getBoolean("full"));
+        assertFalse(event.has("ring"));
+
+        assertEquals(1, binary.binaryEvents.size());
+        ByteBuffer frame = ByteBuffer.wrap(binary.binaryEvents.get(0));
+        assertEquals(VolumeSnapshot.bit(Utils.TYPE_MUSIC), frame.getShort(2));
+        assertEquals(15, frame.getShort(16));
+        assertEquals(100, frame.get(18));
+    }
+
+    private RecordingEventSink subscribe(JSONObject options) {
+        RecordingEventSink subscriber = new RecordingEventSink();
+        engine.addSubscription(new VolumeSubscription(VolumeListenerOptions.fromJson(options), subscriber));
+        return subscriber;
+    }
+}
@@ -0,0 +1,65 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.media.AudioManager;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Every subscriber gets a single final result when it is removed, replaced or when the listener
+ * stops, so that the plugin can release its JS callback.
+ */
+class VolumeSubscriptionLifecycleTest {
+    private final SimulatedAudioBackend backend = SimulatedDevice.newBackend();
+    private final SimulatedEventSource eventSource = new SimulatedEventSource(backend, false);
+    private final VolumeSyncEngine engine = SimulatedDevice.newEngine(new ManualScheduler(), backend, null);
+
+    private RecordingEventSink subscribe(String id) throws Exception {
+        RecordingEventSink sink = new RecordingEventSink();
+        engine.addSubscription(new VolumeSubscription(VolumeListenerOptions.fromJson(new JSONObject().put("id", id)), sink));
+        return sink;
+    }
+
+    @Test
+    void removedSubscriberIsEndedOnce() throws Exception {
+        RecordingEventSink first = subscribe("first");
+        RecordingEventSink second = subscribe("second");
+
+        assertTrue(engine.removeSubscription("first"));
+        assertTrue(engine.removeSubscription("first"));
+        assertEquals(1, first.endCount);
+        assertEquals(0, second.endCount);
+
+        backend.injectUserChange(AudioManager.STREAM_MUSIC, 12);
+        eventSource.deliver(engine);
+        assertTrue(first.events.isEmpty());
+        assertEquals(1, second.events.size());
+
+        assertFalse(engine.removeSubscription("second"));
+        assertEquals(1, second.endCount);
+    }
+
+    @Test
+    void replacedSubscriberIsEnded() throws Exception {
+        RecordingEventSink replaced = subscribe("same");
+        RecordingEventSink replacement = subscribe("same");
+
+        assertEquals(1, replaced.endCount);
+        assertEquals(0, replacement.endCount);
+    }
+
+    @Test
+    void cleanupEndsEverySubscriber() throws Exception {
+        RecordingEventSink first = subscribe("first");
+        RecordingEventSink second = subscribe("second");
+
+        engine.cleanup();
+
+        assertEquals(1, first.endCount);
+        assertEquals(1, second.endCount);
+    }
+}
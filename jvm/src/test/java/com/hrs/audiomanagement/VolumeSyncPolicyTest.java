@@ -0,0 +1,55 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.media.AudioManager;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A user change is synced to the streams a configured policy links, with their own rules.
+ */
+class VolumeSyncPolicyTest {
+    private final SimulatedAudioBackend backend = SimulatedDevice.newBackend();
+    private final SimulatedEventSource eventSource = new SimulatedEventSource(backend, false);
+    private final PluginDiagnostics diagnostics = new PluginDiagnostics(new String[0]);
+    private final RecordingEventSink sink = new RecordingEventSink();
+
+    private void startEngine(JSONObject syncPolicy) throws Exception {
+        JSONObject options = new JSONObject().put("syncPolicy", syncPolicy).put("payload", VolumeListenerOptions.PAYLOAD_DELTA);
+        VolumeSyncEngine engine = SimulatedDevice.newEngine(new ManualScheduler(), backend, options, diagnostics);
+        engine.addSubscription(new VolumeSubscription(VolumeListenerOptions.fromJson(options), sink));
+
+        backend.injectUserChange(AudioManager.STREAM_MUSIC, 12);
+        eventSource.deliver(engine);
+    }
+
+    @Test
+    void linkedStreamsFollowTheirRules() throws Exception {
+        startEngine(new JSONObject()
+            .put("linked", new JSONArray().put("music").put("ring").put("alarm"))
+            .put("streams", new JSONObject().put("ring", new JSONObject().put("ratio", 0.5))));
+
+        // Music at 80%, ring at half of it and alarm at the same level, the others are not linked
+        assertEquals(3, Utils.getStreamIndex(backend, Utils.TYPE_RING));
+        assertEquals(6, Utils.getStreamIndex(backend, Utils.TYPE_ALARM));
+        assertEquals(0, Utils.getStreamIndex(backend, Utils.TYPE_NOTIFICATION));
+        assertEquals(1, sink.events.size());
+        assertEquals(80, sink.last().getInt("music"));
+    }
+
+    @Test
+    void unsupportedLinkedStreamIsSkipped() throws Exception {
+        backend.setStreamUnsupported(AudioManager.STREAM_ACCESSIBILITY);
+        startEngine(new JSONObject().put("linked", new JSONArray().put("music").put("accessibility").put("ring")));
+
+        assertEquals(6, Utils.getStreamIndex(backend, Utils.TYPE_RING));
+        assertEquals(1, sink.events.size());
+        assertEquals(80, sink.last().getInt("music"));
+        assertTrue(sink.errors.isEmpty(), sink.errors.toString());
+        assertEquals(0, diagnostics.toJson().getJSONObject("counters").getInt("failedSyncs"));
+    }
+}
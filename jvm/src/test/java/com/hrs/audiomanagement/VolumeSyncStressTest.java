@@ -0,0 +1,281 @@
+package com.hrs.audiomanagement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Interleaves user changes, programmatic writes, callback deliveries and resets at random, and
+ * checks that the listener neither loses nor duplicates a change.
+ * <p>
+ * The subscriber's view of the streams is rebuilt from its delta events only. Once every
+ * callback was delivered it must match the streams, except for those last written by the
+ * plugin, which are not reported.
+ */
+class VolumeSyncStressTest {
+    private static final int ROUNDS = 500;
+    private static final int MAX_ACTIONS_PER_ROUND = 6;
+    // Keeps a round shorter than the expectation timeout, so no echo expires mid-round
+    private static final int MAX_ADVANCE_MS = 50;
+    private static final int QUIESCENCE_MS = 1000;
+
+    private static final int ACTION_USER_CHANGE = 0;
+    private static final int ACTION_WRITE = 1;
+    private static final int ACTION_DELIVER_SOME = 2;
+    private static final int ACTION_ADVANCE = 3;
+    private static final int ACTION_RESYNC = 4;
+    private static final int ACTION_PAUSE_RESUME = 5;
+    private static final int ACTION_RESTART = 6;
+
+    // Streams the simulated device has a range for
+    private static final int[] TYPES = {
+        Utils.TYPE_RING, Utils.TYPE_NOTIFICATION, Utils.TYPE_SYSTEM, Utils.TYPE_MUSIC, Utils.TYPE_VOICE_CALL, Utils.TYPE_ALARM
+    };
+
+    private Random random;
+    private SimulatedAudioBackend backend;
+    private SimulatedEventSource eventSource;
+    private ManualScheduler scheduler;
+    private StreamCapabilities capabilities;
+    private JSONObject options;
+    private VolumeSyncEngine engine;
+    private RecordingEventSink sink;
+
+    // Subscriber's view, percentage per plugin stream type or -1 until reported
+    private final int[] reported = new int[Utils.TYPE_COUNT];
+    private int lastSequence;
+    private int checkedEvents;
+    // Index last written by the plugin per stream, -1 once an event reported the stream again
+    private final int[] written = new int[Utils.TYPE_COUNT];
+
+    private void setUp(String source, int coalesceMs, long seed) throws Exception {
+        random = new Random(seed);
+        backend = SimulatedDevice.newBackend();
+        eventSource = new SimulatedEventSource(backend, VolumeListenerOptions.SOURCE_BROADCAST.equals(source));
+        scheduler = new ManualScheduler();
+        capabilities = SimulatedDevice.newCapabilities(backend);
+        options = new JSONObject()
+            .put("source", source)
+            .put("coalesceMs", coalesceMs)
+            .put("payload", VolumeListenerOptions.PAYLOAD_DELTA);
+        Arrays.fill(written, -1);
+        startEngine();
+    }
+
+    /**
+     * Same as the first `startVolumeListener`: a new engine, subscriber and full state event.
+     */
+    private void startEngine() {
+        engine = SimulatedDevice.newEngine(scheduler, backend, options);
+        sink = new RecordingEventSink();
+        engine.addSubscription(new VolumeSubscription(VolumeListenerOptions.fromJson(options), sink));
+        Arrays.fill(reported, -1);
+        lastSequence = 0;
+        checkedEvents = 0;
+        engine.requestVolumeChangeToListener(true);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "settings, 0, 1", "settings, 0, 2", "settings, 40, 3",
+        "broadcast, 0, 10", "broadcast, 0, 27", "broadcast, 40, 3"
+    })
+    void interleavedChangesAreReportedOnce(String source, int coalesceMs, long seed) throws Exception {
+        setUp(source, coalesceMs, seed);
+        quiesce();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            String context = "seed " + seed + ", round " + round;
+            int eventsBefore = sink.events.size();
+            boolean onlyWrites = true;
+
+            int actionCount = 1 + random.nextInt(MAX_ACTIONS_PER_ROUND);
+            for (int i = 0; i < actionCount; i++) {
+                int action = random.nextInt(ACTION_RESTART + 1);
+                onlyWrites &= action == ACTION_WRITE || action == ACTION_DELIVER_SOME || action == ACTION_ADVANCE;
+                // Events are applied as they arrive, before the next programmatic write
+                checkEvents(context);
+                perform(action, context);
+            }
+            quiesce();
+
+            checkEvents(context);
+            if (onlyWrites) {
+                assertEquals(eventsBefore, sink.events.size(), context + ": programmatic writes reported");
+            }
+            checkReportedState(context);
+        }
+        assertTrue(sink.errors.isEmpty(), sink.errors.toString());
+    }
+
+    @Test
+    void callsFromAnotherThreadAreDroppedOrRejected() throws Exception {
+        setUp(VolumeListenerOptions.SOURCE_SETTINGS, 0, 0);
+        quiesce();
+        int events = sink.events.size();
+        backend.injectUserChange(Utils.convertStreamTypeToNative(Utils.TYPE_MUSIC), 12);
+        backend.resetCounters();
+
+        List<Runnable> programmaticCalls = List.of(
+            engine::beginProgrammaticChange,
+            () -> engine.expectStreamIndex(Utils.TYPE_MUSIC, 12),
+            () -> engine.adoptStreamIndex(Utils.TYPE_MUSIC, 12),
+            engine::endProgrammaticChange,
+            engine::publishProgrammaticChange
+        );
+        List<Throwable> rejections = new ArrayList<>();
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(() -> {
+            try {
+                // Dropping these would report the write they surround as a user change
+                for (Runnable call : programmaticCalls) {
+                    try {
+                        call.run();
+                    } catch (IllegalStateException e) {
+                        rejections.add(e);
+                    }
+                }
+                // Notifications and reads are dropped
+                engine.onVolumeSettingsChanged();
+                engine.requestVolumeChangeToListener(true);
+                engine.pause();
+                assertTrue(engine.removeSubscription(VolumeListenerOptions.DEFAULT_SUBSCRIPTION_ID));
+                engine.cleanup();
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertNull(failure[0]);
+        assertEquals(programmaticCalls.size(), rejections.size());
+        assertEquals(events, sink.events.size());
+        assertEquals(0, backend.getIpcCount());
+
+        // The engine is untouched, the change is still reported as a user change
+        eventSource.deliver(engine);
+        assertEquals(events + 1, sink.events.size());
+        assertEquals(80, sink.last().getInt("music"));
+    }
+
+    private void perform(int action, String context) {
+        switch (action) {
+            case ACTION_USER_CHANGE -> {
+                int type = randomType();
+                backend.injectUserChange(Utils.convertStreamTypeToNative(type), randomIndex(type));
+            }
+            case ACTION_WRITE -> write();
+            case ACTION_DELIVER_SOME -> eventSource.deliver(engine, random.nextInt(4));
+            case ACTION_ADVANCE -> scheduler.advanceBy(random.nextInt(MAX_ADVANCE_MS));
+            case ACTION_RESYNC -> engine.requestVolumeChangeToListener(random.nextBoolean());
+            case ACTION_PAUSE_RESUME -> {
+                engine.pause();
+                // Changes made and callbacks delivered while paused, which the engine drops
+                if (random.nextBoolean()) perform(ACTION_USER_CHANGE, context);
+                eventSource.deliver(engine, random.nextInt(4));
+                engine.resume();
+            }
+            case ACTION_RESTART -> {
+                engine.cleanup();
+                VolumeSyncEngine released = engine;
+                long writes = backend.getWriteCount();
+                int releasedEvents = sink.events.size();
+                // Callbacks still in flight reach the released engine
+                eventSource.deliver(released);
+                assertEquals(writes, backend.getWriteCount(), context + ": released engine wrote");
+                assertEquals(releasedEvents, sink.events.size(), context + ": released engine sent an event");
+                startEngine();
+            }
+            default -> throw new IllegalArgumentException("unknown action: " + action);
+        }
+    }
+
+    /**
+     * Same as `setVolumeBatch`: streams already at their target are skipped, the others are
+     * written between the begin and end of one programmatic change.
+     */
+    private void write() {
+        engine.beginProgrammaticChange();
+        int count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            int type = randomType();
+            int index = randomIndex(type);
+            if (index == Utils.getStreamIndex(backend, type)) continue;
+
+            engine.expectStreamIndex(type, index);
+            Utils.setStreamIndex(backend, type, index);
+            written[type] = index;
+        }
+        engine.endProgrammaticChange();
+    }
+
+    /**
+     * Delivers every callback, then lets the coalescing windows and echo expectations run out.
+     */
+    private void quiesce() {
+        eventSource.deliver(engine);
+        scheduler.advanceBy(QUIESCENCE_MS);
+        eventSource.deliver(engine);
+        assertEquals(0, eventSource.getPendingCount());
+    }
+
+    /**
+     * Applies the events received since the last check to the subscriber's view: each must
+     * follow the previous one and carry only values the subscriber does not have yet.
+     */
+    private void checkEvents(String context) throws Exception {
+        for (; checkedEvents < sink.events.size(); checkedEvents++) {
+            JSONObject event = sink.events.get(checkedEvents);
+            assertEquals(++lastSequence, event.getInt("seq"), context + ": event lost or duplicated " + event);
+
+            boolean isFull = event.getBoolean("full");
+            int included = 0;
+            for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+                String key = Utils.convertStreamTypeToKey(type);
+                if (!event.has(key)) continue;
+
+                int volume = event.getInt(key);
+                if (!isFull) assertNotEquals(reported[type], volume, context + ": " + key + " reported twice in " + event);
+                reported[type] = volume;
+                written[type] = -1;
+                included++;
+            }
+            if (!isFull) assertTrue(included > 0, context + ": empty delta event " + event);
+        }
+    }
+
+    /**
+     * Once everything is delivered, the subscriber's view matches every stream, except those
+     * still at the index the plugin wrote since they were last reported.
+     */
+    private void checkReportedState(String context) {
+        for (int type : TYPES) {
+            int index = Utils.getStreamIndex(backend, type);
+            if (written[type] == index) continue;
+
+            int volume = capabilities.get(backend, type).toPercentage(index);
+            assertEquals(volume, reported[type], context + ": change of " + Utils.convertStreamTypeToKey(type) + " lost");
+        }
+    }
+
+    private int randomType() {
+        return TYPES[random.nextInt(TYPES.length)];
+    }
+
+    private int randomIndex(int type) {
+        StreamCapabilities.Entry entry = capabilities.get(backend, type);
+        return entry.minIndex + random.nextInt(entry.maxIndex - entry.minIndex + 1);
+    }
+}
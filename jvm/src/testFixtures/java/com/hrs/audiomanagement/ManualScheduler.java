@@ -0,0 +1,60 @@
+package com.hrs.audiomanagement;
+
+import java.util.ArrayList;
+
+/**
+ * {@link VolumeSyncEngine.Scheduler} on a virtual clock: delayed tasks only run when the test
+ * advances time, in due time order, on the calling thread.
+ */
+class ManualScheduler implements VolumeSyncEngine.Scheduler {
+    private static final class Task {
+        final Runnable runnable;
+        final long dueTime;
+
+        Task(Runnable runnable, long dueTime) {
+            this.runnable = runnable;
+            this.dueTime = dueTime;
+        }
+    }
+
+    // In posting order, which is also the run order of tasks due at the same time
+    private final ArrayList<Task> tasks = new ArrayList<>();
+    private long now = 0;
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+        tasks.add(new Task(task, now + delayMillis));
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        tasks.removeIf(scheduled -> scheduled.runnable == task);
+    }
+
+    public long now() {
+        return now;
+    }
+
+    public int pendingTaskCount() {
+        return tasks.size();
+    }
+
+    /**
+     * Runs every task that becomes due within `millis`, including tasks they post.
+     */
+    public void advanceBy(long millis) {
+        long target = now + millis;
+        while (true) {
+            Task next = null;
+            for (Task task : tasks) {
+                if (task.dueTime <= target && (next == null || task.dueTime < next.dueTime)) next = task;
+            }
+            if (next == null) break;
+
+            tasks.remove(next);
+            now = Math.max(now, next.dueTime);
+            next.runnable.run();
+        }
+        now = target;
+    }
+}
@@ -0,0 +1,166 @@
+package com.hrs.audiomanagement;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deterministic in-memory {@link AudioBackend} for running the plugin's volume logic on a plain JVM.
+ * <p>
+ * Every call is counted as one simulated IPC and can be delayed by a fixed latency. Writes that
+ * change a stream index are reported to the installed {@link StreamChangeListener}, the same way
+ * the OS reports them through VOLUME_CHANGED_ACTION, so the listener's feedback loop (user change,
+ * sync writes, echo callbacks) can be replayed without a device. Like on a device with a vibrator,
+ * muting the ring stream switches the ringer mode to vibrate and unmuting it back to normal.
+ */
+class SimulatedAudioBackend implements AudioBackend {
+    // Large enough for every AudioManager.STREAM_* constant
+    private static final int STREAM_SLOTS = 16;
+    private static final int DEFAULT_MAX_INDEX = 15;
+    private static final int STREAM_RING = 2;
+    private static final int RINGER_MODE_VIBRATE = 1;
+    private static final int RINGER_MODE_NORMAL = 2;
+
+    public interface StreamChangeListener {
+        void onStreamVolumeChanged(int streamType, int index, int previousIndex);
+    }
+
+    private final int[] indices = new int[STREAM_SLOTS];
+    private final int[] minIndices = new int[STREAM_SLOTS];
+    private final int[] maxIndices = new int[STREAM_SLOTS];
+    private final boolean[] unsupported = new boolean[STREAM_SLOTS];
+    private int ringerMode = RINGER_MODE_NORMAL;
+
+    private long latencyNanos = 0;
+    private long ipcCount = 0;
+    private long writeCount = 0;
+    private StreamChangeListener listener;
+
+    public SimulatedAudioBackend() {
+        Arrays.fill(maxIndices, DEFAULT_MAX_INDEX);
+    }
+
+    /**
+     * Sets the index range of a stream, clamping its current index into it.
+     */
+    public SimulatedAudioBackend setStreamRange(int streamType, int minIndex, int maxIndex) {
+        minIndices[streamType] = minIndex;
+        maxIndices[streamType] = maxIndex;
+        indices[streamType] = clamp(streamType, indices[streamType]);
+        return this;
+    }
+
+    /**
+     * Makes every call on the stream fail, like the OS does for stream types it does not
+     * know, for example the accessibility stream below API 26.
+     */
+    public SimulatedAudioBackend setStreamUnsupported(int streamType) {
+        unsupported[streamType] = true;
+        return this;
+    }
+
+    /**
+     * Delays every call by `latency`, to approximate the cost of a binder transaction.
+     */
+    public SimulatedAudioBackend setLatency(long latency, TimeUnit unit) {
+        latencyNanos = unit.toNanos(latency);
+        return this;
+    }
+
+    public SimulatedAudioBackend setStreamChangeListener(StreamChangeListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Changes a stream the way a hardware key press would, notifying the listener
+     * without counting an IPC.
+     */
+    public void injectUserChange(int streamType, int index) {
+        applyIndex(streamType, index);
+    }
+
+    public long getIpcCount() {
+        return ipcCount;
+    }
+
+    /**
+     * @return the number of setStreamVolume calls that actually changed a stream
+     */
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    public void resetCounters() {
+        ipcCount = 0;
+        writeCount = 0;
+    }
+
+    @Override
+    public int getStreamVolume(int streamType) {
+        simulateIpc();
+        checkSupported(streamType);
+        return indices[streamType];
+    }
+
+    @Override
+    public int getStreamMaxVolume(int streamType) {
+        simulateIpc();
+        checkSupported(streamType);
+        return maxIndices[streamType];
+    }
+
+    @Override
+    public int getStreamMinVolume(int streamType) {
+        simulateIpc();
+        checkSupported(streamType);
+        return minIndices[streamType];
+    }
+
+    @Override
+    public void setStreamVolume(int streamType, int index, int flags) {
+        simulateIpc();
+        checkSupported(streamType);
+        if (applyIndex(streamType, index)) writeCount++;
+    }
+
+    @Override
+    public int getRingerMode() {
+        simulateIpc();
+        return ringerMode;
+    }
+
+    @Override
+    public void setRingerMode(int ringerMode) {
+        simulateIpc();
+        this.ringerMode = ringerMode;
+    }
+
+    private boolean applyIndex(int streamType, int index) {
+        int previousIndex = indices[streamType];
+        int newIndex = clamp(streamType, index);
+        if (newIndex == previousIndex) return false;
+
+        indices[streamType] = newIndex;
+        if (streamType == STREAM_RING) ringerMode = newIndex == 0 ? RINGER_MODE_VIBRATE : RINGER_MODE_NORMAL;
+        if (listener != null) listener.onStreamVolumeChanged(streamType, newIndex, previousIndex);
+        return true;
+    }
+
+    private void checkSupported(int streamType) {
+        if (unsupported[streamType]) throw new IllegalArgumentException("Bad stream type " + streamType);
+    }
+
+    private int clamp(int streamType, int index) {
+        return Math.max(minIndices[streamType], Math.min(index, maxIndices[streamType]));
+    }
+
+    private void simulateIpc() {
+        ipcCount++;
+        if (latencyNanos <= 0) return;
+
+        long deadline = System.nanoTime() + latencyNanos;
+        while (System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
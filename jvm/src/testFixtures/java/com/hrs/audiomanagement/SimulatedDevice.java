@@ -0,0 +1,66 @@
+package com.hrs.audiomanagement;
+
+import android.media.AudioManager;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONObject;
+
+/**
+ * Builds the objects the plugin wires together in `startVolumeListener`, on top of a
+ * {@link SimulatedAudioBackend} with the stream ranges of a typical phone.
+ */
+final class SimulatedDevice {
+    // Same as the plugin
+    private static final int VOLUME_TRACE_CAPACITY = 512;
+
+    private SimulatedDevice() {
+    }
+
+    static SimulatedAudioBackend newBackend() {
+        return new SimulatedAudioBackend()
+            .setStreamRange(AudioManager.STREAM_VOICE_CALL, 1, 5)
+            .setStreamRange(AudioManager.STREAM_SYSTEM, 0, 7)
+            .setStreamRange(AudioManager.STREAM_RING, 0, 7)
+            .setStreamRange(AudioManager.STREAM_MUSIC, 0, 15)
+            .setStreamRange(AudioManager.STREAM_ALARM, 1, 7)
+            .setStreamRange(AudioManager.STREAM_NOTIFICATION, 0, 7);
+    }
+
+    static StreamCapabilities newCapabilities(AudioBackend backend) {
+        StreamCapabilities capabilities = new StreamCapabilities();
+        capabilities.refresh(backend);
+        return capabilities;
+    }
+
+    static VolumeSyncEngine newEngine(VolumeSyncEngine.Scheduler scheduler, AudioBackend backend, @Nullable JSONObject options) {
+        return newEngine(scheduler, backend, options, new PluginDiagnostics(new String[0]));
+    }
+
+    static VolumeSyncEngine newEngine(
+        VolumeSyncEngine.Scheduler scheduler,
+        AudioBackend backend,
+        @Nullable JSONObject options,
+        PluginDiagnostics diagnostics
+    ) {
+        return newEngine(scheduler, backend, () -> DeviceVolumeMemory.ROUTE_SPEAKER, options, diagnostics);
+    }
+
+    static VolumeSyncEngine newEngine(
+        VolumeSyncEngine.Scheduler scheduler,
+        AudioBackend backend,
+        VolumeSyncEngine.RouteReader routeReader,
+        @Nullable JSONObject options,
+        PluginDiagnostics diagnostics
+    ) {
+        return new VolumeSyncEngine(
+            scheduler,
+            backend,
+            newCapabilities(backend),
+            routeReader,
+            VolumeListenerOptions.fromJson(options),
+            diagnostics,
+            new VolumeTraceRecorder(VOLUME_TRACE_CAPACITY)
+        );
+    }
+}
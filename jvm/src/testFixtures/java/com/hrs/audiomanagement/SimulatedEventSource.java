@@ -0,0 +1,73 @@
+package com.hrs.audiomanagement;
+
+/**
+ * Queues the stream changes of a {@link SimulatedAudioBackend} and delivers them to a
+ * {@link VolumeSyncEngine} when asked, the way {@link VolumeChangedReceiver} (one broadcast per
+ * change, carrying the new index) or {@link VolumeContentObserver} (one callback per change,
+ * which re-reads the streams) would. Delivery can be delayed to replay stale callbacks.
+ * <p>
+ * Does not allocate, so it can drive benchmarks.
+ */
+class SimulatedEventSource implements SimulatedAudioBackend.StreamChangeListener {
+    private static final int CAPACITY = 256;
+
+    private final boolean isBroadcast;
+    // Plugin stream type and new index of each change not delivered yet, oldest first
+    private final int[] types = new int[CAPACITY];
+    private final int[] indices = new int[CAPACITY];
+    private int count = 0;
+
+    public SimulatedEventSource(SimulatedAudioBackend backend, boolean isBroadcast) {
+        this.isBroadcast = isBroadcast;
+        backend.setStreamChangeListener(this);
+    }
+
+    @Override
+    public void onStreamVolumeChanged(int streamType, int index, int previousIndex) {
+        if (count == CAPACITY) throw new IllegalStateException("more than " + CAPACITY + " undelivered changes, is the engine writing in a loop?");
+
+        types[count] = Utils.convertStreamTypeFromNative(streamType);
+        indices[count++] = index;
+    }
+
+    public int getPendingCount() {
+        return count;
+    }
+
+    /**
+     * Delivers one callback per queued change, including the changes made by the engine
+     * while handling them.
+     *
+     * @return the number of callbacks delivered
+     */
+    public int deliver(VolumeSyncEngine engine) {
+        return deliver(engine, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Delivers the callbacks of the `maxCount` oldest queued changes, the others stay queued.
+     *
+     * @return the number of callbacks delivered
+     */
+    public int deliver(VolumeSyncEngine engine, int maxCount) {
+        int delivered = 0;
+        for (; delivered < count && delivered < maxCount; delivered++) {
+            if (isBroadcast) {
+                engine.onStreamVolumeChanged(types[delivered], indices[delivered]);
+            } else {
+                engine.onVolumeSettingsChanged();
+            }
+        }
+        System.arraycopy(types, delivered, types, 0, count - delivered);
+        System.arraycopy(indices, delivered, indices, 0, count - delivered);
+        count -= delivered;
+        return delivered;
+    }
+
+    /**
+     * Drops the queued changes, as if their callbacks were never delivered.
+     */
+    public void clear() {
+        count = 0;
+    }
+}
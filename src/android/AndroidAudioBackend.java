@@ -0,0 +1,56 @@
+package com.hrs.audiomanagement;
+
+import android.media.AudioManager;
+import android.os.Build;
+
+/**
+ * {@link AudioBackend} that forwards every call to the system `AudioManager`,
+ * counting them in {@link PluginDiagnostics}.
+ */
+class AndroidAudioBackend implements AudioBackend {
+    private final AudioManager manager;
+    private final PluginDiagnostics diagnostics;
+
+    public AndroidAudioBackend(AudioManager manager, PluginDiagnostics diagnostics) {
+        this.manager = manager;
+        this.diagnostics = diagnostics;
+    }
+
+    @Override
+    public int getStreamVolume(int streamType) {
+        diagnostics.increment(PluginDiagnostics.COUNTER_AUDIO_MANAGER_CALLS);
+        return manager.getStreamVolume(streamType);
+    }
+
+    @Override
+    public int getStreamMaxVolume(int streamType) {
+        diagnostics.increment(PluginDiagnostics.COUNTER_AUDIO_MANAGER_CALLS);
+        return manager.getStreamMaxVolume(streamType);
+    }
+
+    @Override
+    public int getStreamMinVolume(int streamType) {
+        // Not available before P, where every stream could go down to 0
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) return 0;
+        diagnostics.increment(PluginDiagnostics.COUNTER_AUDIO_MANAGER_CALLS);
+        return manager.getStreamMinVolume(streamType);
+    }
+
+    @Override
+    public void setStreamVolume(int streamType, int index, int flags) {
+        diagnostics.increment(PluginDiagnostics.COUNTER_AUDIO_MANAGER_CALLS);
+        manager.setStreamVolume(streamType, index, flags);
+    }
+
+    @Override
+    public int getRingerMode() {
+        diagnostics.increment(PluginDiagnostics.COUNTER_AUDIO_MANAGER_CALLS);
+        return manager.getRingerMode();
+    }
+
+    @Override
+    public void setRingerMode(int ringerMode) {
+        diagnostics.increment(PluginDiagnostics.COUNTER_AUDIO_MANAGER_CALLS);
+        manager.setRingerMode(ringerMode);
+    }
+}
@@ -0,0 +1,24 @@
+package com.hrs.audiomanagement;
+
+/**
+ * The subset of `android.media.AudioManager` used by the plugin.
+ * <p>
+ * Stream types and ringer modes use the native `AudioManager` constants. Every method is
+ * expected to be a binder IPC on a real device, so callers should avoid redundant calls.
+ * The jvm build implements it with an in-memory simulator, to run the volume logic without a device.
+ *
+ * @see AndroidAudioBackend
+ */
+interface AudioBackend {
+    int getStreamVolume(int streamType);
+
+    int getStreamMaxVolume(int streamType);
+
+    int getStreamMinVolume(int streamType);
+
+    void setStreamVolume(int streamType, int index, int flags);
+
+    int getRingerMode();
+
+    void setRingerMode(int ringerMode);
+}
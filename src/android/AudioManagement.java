@@ -2,10 +2,16 @@ package com.hrs.audiomanagement;
 
 import android.app.Activity;
 import android.app.NotificationManager;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioDeviceCallback;
+import android.media.AudioDeviceInfo;
 import android.media.AudioManager;
+import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.provider.Settings;
 
 import androidx.annotation.Nullable;
@@ -18,6 +24,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import timber.log.Timber;
 
@@ -27,16 +34,69 @@ public class AudioManagement extends CordovaPlugin {
     private static final String ACTION_GET_MODE = "getAudioMode";
     private static final String ACTION_SET_VOLUME = "setVolume";
     private static final String ACTION_GET_VOLUME = "getVolume";
+    private static final String ACTION_GET_MAX_VOLUME = "getMaxVolume";
     private static final String ACTION_SET_VOLUME_BATCH = "setVolumeBatch";
     private static final String ACTION_START_VOLUME_LISTENER = "startVolumeListener";
     private static final String ACTION_STOP_VOLUME_LISTENER = "stopVolumeListener";
 
     private static final String ACTION_REQUEST_VOLUME_CHANGE_TO_LISTENER = "requestVolumeChangeToListener";
+    private static final String ACTION_ACK_VOLUME_EVENT = "ackVolumeEvent";
+    private static final String ACTION_GET_DIAGNOSTICS = "getDiagnostics";
+    private static final String ACTION_GET_VOLUME_TRACE = "getVolumeTrace";
+    private static final String ACTION_GET_AUDIO_STATE = "getAudioState";
+    private static final String ACTION_START_AUDIO_MODE_LISTENER = "startAudioModeListener";
+    private static final String ACTION_STOP_AUDIO_MODE_LISTENER = "stopAudioModeListener";
+    private static final String ACTION_RAMP_VOLUME = "rampVolume";
+    private static final String ACTION_CANCEL_VOLUME_RAMP = "cancelVolumeRamp";
+    private static final String ACTION_EXECUTE_TRANSACTION = "executeTransaction";
+    private static final String ACTION_SAVE_VOLUME_PROFILE = "saveVolumeProfile";
+    private static final String ACTION_GET_VOLUME_PROFILES = "getVolumeProfiles";
+    private static final String ACTION_DELETE_VOLUME_PROFILE = "deleteVolumeProfile";
+    private static final String ACTION_APPLY_VOLUME_PROFILE = "applyVolumeProfile";
 
     // These are required for SDK 23 and up
     private static final String ACTION_GET_NOTIFICATION_ACCESS_POLICY_STATE = "getNotificationPolicyAccessState";
     private static final String ACTION_OPEN_NOTIFICATION_ACCESS_POLICY_SETTINGS = "openNotificationPolicyAccessSettings";
 
+    // Actions with their own latency histogram in diagnostics
+    private static final String[] DIAGNOSED_ACTIONS = {
+        ACTION_SET_MODE,
+        ACTION_GET_MODE,
+        ACTION_SET_VOLUME,
+        ACTION_GET_VOLUME,
+        ACTION_GET_MAX_VOLUME,
+        ACTION_SET_VOLUME_BATCH,
+        ACTION_START_VOLUME_LISTENER,
+        ACTION_STOP_VOLUME_LISTENER,
+        ACTION_REQUEST_VOLUME_CHANGE_TO_LISTENER,
+        ACTION_ACK_VOLUME_EVENT,
+        ACTION_GET_DIAGNOSTICS,
+        ACTION_GET_VOLUME_TRACE,
+        ACTION_GET_AUDIO_STATE,
+        ACTION_START_AUDIO_MODE_LISTENER,
+        ACTION_STOP_AUDIO_MODE_LISTENER,
+        ACTION_RAMP_VOLUME,
+        ACTION_CANCEL_VOLUME_RAMP,
+        ACTION_EXECUTE_TRANSACTION,
+        ACTION_SAVE_VOLUME_PROFILE,
+        ACTION_GET_VOLUME_PROFILES,
+        ACTION_DELETE_VOLUME_PROFILE,
+        ACTION_APPLY_VOLUME_PROFILE,
+        ACTION_GET_NOTIFICATION_ACCESS_POLICY_STATE,
+        ACTION_OPEN_NOTIFICATION_ACCESS_POLICY_SETTINGS
+    };
+
+    private static final String AUDIO_THREAD_NAME = "AudioManagement";
+    private static final int VOLUME_TRACE_CAPACITY = 512;
+
+    // Output routes by priority, when several devices are connected media plays on the first one
+    private static final int[] ROUTE_PRIORITY = {
+        DeviceVolumeMemory.ROUTE_WIRED,
+        DeviceVolumeMemory.ROUTE_USB,
+        DeviceVolumeMemory.ROUTE_BLUETOOTH,
+        DeviceVolumeMemory.ROUTE_HEARING_AID
+    };
+
     private static final int SILENT_MODE = 0;
     private static final int VIBRATE_MODE = 1;
     private static final int NORMAL_MODE = 2;
@@ -47,23 +107,77 @@ public class AudioManagement extends CordovaPlugin {
     private static final String KEY_AUDIO_MODE = "audioMode";
     private static final String KEY_LABEL = "label";
     private static final String KEY_VOLUME = "volume";
+    private static final String KEY_SCALED_VOLUME = "scaledVolume";
+    private static final String KEY_MAX_VOLUME = "maxVolume";
+    private static final String KEY_SCALED = "scaled";
     private static final String KEY_NOTIFICATION_POLICY_ACCESS_GRANTED = "isNotificationPolicyAccessGranted";
     private static final String KEY_STREAMS = "streams";
     private static final String KEY_STREAM_TYPE = "streamType";
     private static final String KEY_ERRORS = "errors";
     private static final String KEY_ERROR_MESSAGE = "errorMessage";
+    private static final String KEY_APPLIED = "applied";
+    private static final String KEY_SKIPPED = "skipped";
+    private static final String KEY_STREAM_TYPES = "streamTypes";
+    private static final String KEY_DURATION_MS = "durationMs";
+    private static final String KEY_CURVE = "curve";
+    private static final String KEY_COMPLETED = "completed";
+    private static final String KEY_ACTION = "action";
+    private static final String KEY_SUCCESS = "success";
+    private static final String KEY_RESULT = "result";
+    private static final String KEY_RESULTS = "results";
+    private static final String KEY_PROFILES = "profiles";
 
     private AudioManager manager;
+    private AudioBackend backend;
     private NotificationManager notificationManager;
+    private RingerStateCache ringerStateCache;
+    private VolumeProfileStore volumeProfiles;
+    private final StreamCapabilities streamCapabilities = new StreamCapabilities();
+    private final PluginDiagnostics diagnostics = new PluginDiagnostics(DIAGNOSED_ACTIONS);
+    private final VolumeTraceRecorder volumeTrace = new VolumeTraceRecorder(VOLUME_TRACE_CAPACITY);
+
+    // Every AudioManager call and all listener bookkeeping is confined to this thread
+    private HandlerThread audioThread;
+    private Handler audioHandler;
+    private VolumeRamper volumeRamper;
+    // Nesting depth of programmatic changes, only the outermost one is reported to the listener
+    private int programmaticChangeDepth = 0;
+
+    // Stream index ranges can differ per output device, so refresh them when routing changes
+    private final AudioDeviceCallback audioDeviceCallback = new AudioDeviceCallback() {
+        @Override
+        public void onAudioDevicesAdded(AudioDeviceInfo[] addedDevices) {
+            onAudioDevicesChanged();
+        }
+
+        @Override
+        public void onAudioDevicesRemoved(AudioDeviceInfo[] removedDevices) {
+            onAudioDevicesChanged();
+        }
+    };
 
     // Callbacks
     @Nullable
-    private CallbackContext volumeListenerCallbackContext;
+    private CallbackContext audioModeListenerCallbackContext;
+
+    // Listener state, shared by every event source and every subscriber
+    @Nullable
+    private VolumeSyncEngine volumeSyncEngine;
 
     // Content observers
     @Nullable
     private VolumeContentObserver volumeObserver;
 
+    // Broadcast receivers
+    @Nullable
+    private VolumeChangedReceiver volumeChangedReceiver;
+
+    // Options the listener engine was started with, and whether its event source is suspended
+    // while the app is in the background
+    @Nullable
+    private VolumeListenerOptions volumeListenerOptions;
+    private boolean isVolumeListenerPaused = false;
+
     // Forces `value` into range [`min`, `max`]
     private static int clamp(int value, int min, int max) {
         if (value < min) return min;
@@ -85,36 +199,95 @@ public class AudioManagement extends CordovaPlugin {
     public void pluginInitialize() {
         Activity activity = this.cordova.getActivity();
         this.manager = (AudioManager) activity.getSystemService(Context.AUDIO_SERVICE);
+        this.backend = new AndroidAudioBackend(manager, diagnostics);
         this.notificationManager = (NotificationManager) activity.getSystemService(Context.NOTIFICATION_SERVICE);
+        this.ringerStateCache = new RingerStateCache(backend, notificationManager);
+        this.ringerStateCache.setRingerModeListener(this::notifyAudioModeListener);
+        // Profiles are only read from disk on first use
+        this.volumeProfiles = new VolumeProfileStore(activity.getApplicationContext());
+
+        this.audioThread = new HandlerThread(AUDIO_THREAD_NAME);
+        this.audioThread.start();
+        this.audioHandler = new Handler(audioThread.getLooper());
+        this.volumeRamper = new VolumeRamper(new HandlerScheduler(audioHandler), this::writeRampStep);
+
+        audioHandler.post(() -> streamCapabilities.refresh(backend));
+        audioHandler.post(() -> ringerStateCache.setObserving(registerAudioThreadReceiver(ringerStateCache, RingerStateCache.makeIntentFilter())));
+        this.manager.registerAudioDeviceCallback(audioDeviceCallback, audioHandler);
     }
 
     public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
         Timber.d("execute action = %s", action);
 
+        // Arguments are parsed on the bridge thread, every AudioManager call runs on the audio thread
         if (ACTION_SET_MODE.equals(action)) {
             final int mode = args.getInt(0);
-            setModeAction(mode, callbackContext);
+            runOnAudioThread(action, callbackContext, () -> setModeAction(mode, callbackContext));
         } else if (ACTION_GET_MODE.equals(action)) {
-            getAudioMode(callbackContext);
+            runOnAudioThread(action, callbackContext, () -> getAudioMode(callbackContext));
         } else if (ACTION_GET_VOLUME.equals(action)) {
             final int type = args.getInt(0);
-            getVolumeAction(type, callbackContext);
+            runOnAudioThread(action, callbackContext, () -> getVolumeAction(type, callbackContext));
+        } else if (ACTION_GET_MAX_VOLUME.equals(action)) {
+            final int type = args.getInt(0);
+            runOnAudioThread(action, callbackContext, () -> getMaxVolumeAction(type, callbackContext));
         } else if (ACTION_SET_VOLUME.equals(action)) {
             final int type = args.getInt(0);
             final int volume = args.getInt(1);
-            setVolume(type, volume, callbackContext);
+            final boolean scaled = args.optBoolean(2, true);
+            runOnAudioThread(action, callbackContext, () -> setVolume(type, volume, scaled, callbackContext));
         } else if (ACTION_SET_VOLUME_BATCH.equals(action)) {
-            setVolumeBatch(args.getJSONObject(0), callbackContext);
+            final JSONObject volumeConfig = args.getJSONObject(0);
+            runOnAudioThread(action, callbackContext, () -> setVolumeBatch(volumeConfig, callbackContext));
         } else if (ACTION_START_VOLUME_LISTENER.equals(action)) {
-            startVolumeListener(callbackContext);
+            final VolumeListenerOptions options = VolumeListenerOptions.fromJson(args.optJSONObject(0));
+            runOnAudioThread(action, callbackContext, () -> startVolumeListener(options, callbackContext));
         } else if (ACTION_STOP_VOLUME_LISTENER.equals(action)) {
-            stopVolumeListener(callbackContext);
+            final String subscriptionId = args.optString(0, VolumeListenerOptions.DEFAULT_SUBSCRIPTION_ID);
+            runOnAudioThread(action, callbackContext, () -> stopVolumeListener(subscriptionId, callbackContext));
         } else if (ACTION_REQUEST_VOLUME_CHANGE_TO_LISTENER.equals(action)) {
-            requestVolumeChangeToListener(callbackContext);
+            final boolean fullResync = args.optBoolean(0, false);
+            runOnAudioThread(action, callbackContext, () -> requestVolumeChangeToListener(fullResync, callbackContext));
+        } else if (ACTION_EXECUTE_TRANSACTION.equals(action)) {
+            final JSONArray commands = args.getJSONArray(0);
+            runOnAudioThread(action, callbackContext, () -> executeTransaction(commands, callbackContext));
+        } else if (ACTION_SAVE_VOLUME_PROFILE.equals(action)) {
+            final String name = args.getString(0);
+            final JSONObject profile = args.getJSONObject(1);
+            runOnAudioThread(action, callbackContext, () -> saveVolumeProfile(name, profile, callbackContext));
+        } else if (ACTION_GET_VOLUME_PROFILES.equals(action)) {
+            runOnAudioThread(action, callbackContext, () -> getVolumeProfiles(callbackContext));
+        } else if (ACTION_DELETE_VOLUME_PROFILE.equals(action)) {
+            final String name = args.getString(0);
+            runOnAudioThread(action, callbackContext, () -> deleteVolumeProfile(name, callbackContext));
+        } else if (ACTION_APPLY_VOLUME_PROFILE.equals(action)) {
+            final String name = args.getString(0);
+            runOnAudioThread(action, callbackContext, () -> applyVolumeProfile(name, callbackContext));
+        } else if (ACTION_ACK_VOLUME_EVENT.equals(action)) {
+            final String subscriptionId = args.optString(0, VolumeListenerOptions.DEFAULT_SUBSCRIPTION_ID);
+            runOnAudioThread(action, callbackContext, () -> ackVolumeEvent(subscriptionId, callbackContext));
+        } else if (ACTION_GET_DIAGNOSTICS.equals(action)) {
+            final boolean reset = args.optBoolean(0, false);
+            runOnAudioThread(action, callbackContext, () -> getDiagnostics(reset, callbackContext));
+        } else if (ACTION_GET_VOLUME_TRACE.equals(action)) {
+            final boolean clear = args.optBoolean(0, false);
+            runOnAudioThread(action, callbackContext, () -> getVolumeTrace(clear, callbackContext));
+        } else if (ACTION_GET_AUDIO_STATE.equals(action)) {
+            runOnAudioThread(action, callbackContext, () -> getAudioState(callbackContext));
+        } else if (ACTION_START_AUDIO_MODE_LISTENER.equals(action)) {
+            runOnAudioThread(action, callbackContext, () -> startAudioModeListener(callbackContext));
+        } else if (ACTION_STOP_AUDIO_MODE_LISTENER.equals(action)) {
+            runOnAudioThread(action, callbackContext, () -> stopAudioModeListener(callbackContext));
+        } else if (ACTION_RAMP_VOLUME.equals(action)) {
+            final JSONObject rampConfig = args.getJSONObject(0);
+            runOnAudioThread(action, callbackContext, () -> rampVolume(rampConfig, callbackContext));
+        } else if (ACTION_CANCEL_VOLUME_RAMP.equals(action)) {
+            final JSONArray streamTypes = args.optJSONArray(0);
+            runOnAudioThread(action, callbackContext, () -> cancelVolumeRamp(streamTypes, callbackContext));
         } else if (ACTION_GET_NOTIFICATION_ACCESS_POLICY_STATE.equals(action)) {
-            getNotificationPolicyAccessState(callbackContext);
+            runOnAudioThread(action, callbackContext, () -> getNotificationPolicyAccessState(callbackContext));
         } else if (ACTION_OPEN_NOTIFICATION_ACCESS_POLICY_SETTINGS.equals(action)) {
-            openNotificationPolicyAccessSettings(callbackContext);
+            runOnAudioThread(action, callbackContext, () -> openNotificationPolicyAccessSettings(callbackContext));
         } else {
             notifyActionError(callbackContext, "AudioManagement." + action + " not found !");
             return false;
@@ -123,6 +296,38 @@ public class AudioManagement extends CordovaPlugin {
         return true;
     }
 
+    private interface AudioTask {
+        void run() throws JSONException;
+    }
+
+    /**
+     * Queues `task` on the audio thread. Tasks run one at a time, in the order JS issued them.
+     */
+    private void runOnAudioThread(String action, CallbackContext callbackContext, AudioTask task) {
+        final long queuedAt = System.nanoTime();
+        audioHandler.post(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                notifyActionError(callbackContext, action + " error: " + e.getMessage());
+            } finally {
+                diagnostics.recordAction(action, System.nanoTime() - queuedAt);
+            }
+        });
+    }
+
+    private void getDiagnostics(boolean reset, CallbackContext callbackContext) throws JSONException {
+        JSONObject result = diagnostics.toJson();
+        if (reset) diagnostics.reset();
+        callbackContext.success(result);
+    }
+
+    private void getVolumeTrace(boolean clear, CallbackContext callbackContext) throws JSONException {
+        JSONObject result = volumeTrace.toJson();
+        if (clear) volumeTrace.clear();
+        callbackContext.success(result);
+    }
+
     private void notifyActionError(CallbackContext callbackContext, String errorMessage) {
         Timber.e(errorMessage);
         callbackContext.error(errorMessage);
@@ -130,7 +335,7 @@ public class AudioManagement extends CordovaPlugin {
 
     private void getNotificationPolicyAccessState(CallbackContext callbackContext) throws JSONException {
         JSONObject result = new JSONObject();
-        boolean granted = this.notificationManager.isNotificationPolicyAccessGranted();
+        boolean granted = ringerStateCache.isNotificationPolicyAccessGranted();
         result.put(KEY_NOTIFICATION_POLICY_ACCESS_GRANTED, granted);
         callbackContext.success(result);
     }
@@ -150,146 +355,825 @@ public class AudioManagement extends CordovaPlugin {
     }
 
     private void getVolumeAction(int type, CallbackContext callbackContext) throws JSONException {
-        final int volume = Utils.getVolumePercentage(manager, type);
+        StreamCapabilities.Entry entry = streamCapabilities.get(backend, type);
 
-        if (volume == -1) {
+        if (entry == null) {
             notifyActionError(callbackContext, "Unknown volume type! " + type);
             return;
         }
 
+        callbackContext.success(readVolume(type, entry));
+    }
+
+    /**
+     * @return the current volume of the stream, as a VolumeResult
+     */
+    private JSONObject readVolume(int type, StreamCapabilities.Entry entry) throws JSONException {
+        final int index = Utils.getStreamIndex(backend, type);
+
         JSONObject vol = new JSONObject();
-        vol.put(KEY_VOLUME, volume);
-        callbackContext.success(vol);
+        vol.put(KEY_VOLUME, index);
+        vol.put(KEY_SCALED_VOLUME, entry.toPercentage(index));
+        return vol;
+    }
+
+    private void getMaxVolumeAction(int type, CallbackContext callbackContext) throws JSONException {
+        StreamCapabilities.Entry entry = streamCapabilities.get(backend, type);
+
+        if (entry == null) {
+            notifyActionError(callbackContext, "Unknown volume type! " + type);
+            return;
+        }
+
+        callbackContext.success(new JSONObject().put(KEY_MAX_VOLUME, entry.maxIndex));
+    }
+
+    /**
+     * @param volume percentage in range [0, 100] when `scaled`, raw index in range [minIndex, maxIndex] otherwise
+     * @return the stream index for `volume`, or -1 if it is out of range
+     */
+    private static int toTargetIndex(StreamCapabilities.Entry entry, int volume, boolean scaled) {
+        if (scaled) {
+            return volume >= 0 && volume <= 100 ? entry.toIndex(volume) : -1;
+        }
+        return volume >= entry.minIndex && volume <= entry.maxIndex ? volume : -1;
     }
 
     /**
-     * @param isApplyChangesStop
-     * @see VolumeContentObserver#stopApplyChanges(boolean)
+     * Nested calls share the window of the outermost one.
+     *
+     * @see VolumeSyncEngine#beginProgrammaticChange()
      */
-    private void stopVolumeObserverApplyChanges(boolean isApplyChangesStop) {
-        if (volumeObserver != null) this.volumeObserver.stopApplyChanges(isApplyChangesStop);
+    private void beginVolumeObserverProgrammaticChange() {
+        if (programmaticChangeDepth++ == 0 && volumeSyncEngine != null) volumeSyncEngine.beginProgrammaticChange();
+    }
+
+    /**
+     * Writes `index` to the stream, letting the observer know so it does not report it as a user change.
+     *
+     * @param oldIndex current index of the stream, recorded in the volume trace
+     */
+    private void setStreamIndexExpected(int type, int oldIndex, int index) {
+        volumeTrace.record(type, oldIndex, index, VolumeTraceRecorder.SOURCE_PROGRAMMATIC);
+        if (volumeSyncEngine != null) volumeSyncEngine.expectStreamIndex(type, index);
+        Utils.setStreamIndex(backend, type, index);
+        ringerStateCache.onStreamWritten(type);
+    }
+
+    /**
+     * The OS mutes or restores the ring and notification streams along with the ringer mode, when
+     * it is set by a programmatic change their new index is expected like any other write.
+     */
+    private void expectRingerModeStreams() {
+        if (programmaticChangeDepth == 0 || volumeSyncEngine == null) return;
+
+        for (int type : new int[]{Utils.TYPE_RING, Utils.TYPE_NOTIFICATION}) {
+            volumeSyncEngine.expectStreamIndex(type, Utils.getStreamIndex(backend, type));
+        }
+    }
+
+    /**
+     * @see VolumeSyncEngine#endProgrammaticChange()
+     */
+    private void endVolumeObserverProgrammaticChange() {
+        if (--programmaticChangeDepth == 0 && volumeSyncEngine != null) volumeSyncEngine.endProgrammaticChange();
     }
 
     private void setVolumeBatch(JSONObject volumeConfig, final CallbackContext callbackContext) {
-        stopVolumeObserverApplyChanges(true);
+        try {
+            callbackContext.success(applyVolumeBatch(volumeConfig));
+        } catch (Exception e) {
+            notifyActionError(callbackContext, "setVolumeBatch error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the BatchStreamSetResult, entries that cannot be applied are reported in its errors
+     * @throws JSONException if `volumeConfig` has no stream list
+     */
+    private JSONObject applyVolumeBatch(JSONObject volumeConfig) throws JSONException {
+        ArrayList<JSONObject> errors = new ArrayList<>();
+        JSONArray applied = new JSONArray();
+        JSONArray skipped = new JSONArray();
 
-        cordova.getActivity().runOnUiThread(() -> {
-            ArrayList<JSONObject> errors = new ArrayList<>();
+        // Target index per plugin stream type, later entries for the same stream win
+        int[] targetIndices = new int[Utils.TYPE_COUNT];
+        Arrays.fill(targetIndices, -1);
 
+        JSONArray streams = volumeConfig.getJSONArray(KEY_STREAMS);
+        int streamCount = streams.length();
+        Timber.d("setVolumeBatch() updating %s streams", streamCount);
+        for (int i = 0; i < streamCount; i++) {
             try {
-                JSONArray streams = volumeConfig.getJSONArray(KEY_STREAMS);
-                int streamCount = streams.length();
-                Timber.d("setVolumeBatch() updating %s streams", streamCount);
-                for (int i = 0; i < streamCount; i++) {
-                    try {
-                        final JSONObject streamConfig = streams.getJSONObject(i);
-                        if (streamConfig == null) {
-                            Timber.w("setVolumeBatch() skipping invalid config at index %s", i);
-                            continue;
-                        }
-
-                        final int type = streamConfig.getInt(KEY_STREAM_TYPE);
-                        if (Utils.convertStreamTypeToNative(type) == Utils.TYPE_UNKNOWN) {
-                            Timber.w("setVolumeBatch() invalid stream type at index %s", i);
-                            errors.add(new JSONObject()
-                                .put(KEY_STREAM_TYPE, type)
-                                .put(KEY_ERROR_MESSAGE, "unknown stream type: " + type));
-                            continue;
-                        }
-
-                        final int inputVolume = streamConfig.getInt(KEY_VOLUME);
-                        if (inputVolume < 0 || inputVolume > 100) {
-                            Timber.w("setVolumeBatch() invalid volume at index %s", i);
-                            errors.add(new JSONObject()
-                                .put(KEY_STREAM_TYPE, type)
-                                .put(KEY_ERROR_MESSAGE, "invalid volume level: " + inputVolume));
-                            continue;
-                        }
-
-                        Utils.setVolumePercentage(manager, type, inputVolume);
-                    } catch (Exception e) {
-                        Timber.e(e, "caught error attempting to set stream");
-                        errors.add(new JSONObject()
-                            .put(KEY_ERROR_MESSAGE, e.getMessage()));
-                    }
+                final JSONObject streamConfig = streams.getJSONObject(i);
+                if (streamConfig == null) {
+                    Timber.w("setVolumeBatch() skipping invalid config at index %s", i);
+                    continue;
                 }
 
-                callbackContext.success(new JSONObject().put(KEY_ERRORS, errors));
+                final int type = streamConfig.getInt(KEY_STREAM_TYPE);
+                if (Utils.convertStreamTypeToNative(type) == Utils.TYPE_UNKNOWN) {
+                    Timber.w("setVolumeBatch() invalid stream type at index %s", i);
+                    errors.add(new JSONObject()
+                        .put(KEY_STREAM_TYPE, type)
+                        .put(KEY_ERROR_MESSAGE, "unknown stream type: " + type));
+                    continue;
+                }
+
+                StreamCapabilities.Entry entry = streamCapabilities.get(backend, type);
+                if (entry == null) throw new IllegalStateException("stream capabilities unavailable");
+
+                final int inputVolume = streamConfig.getInt(KEY_VOLUME);
+                final int targetIndex = toTargetIndex(entry, inputVolume, streamConfig.optBoolean(KEY_SCALED, true));
+                if (targetIndex < 0) {
+                    Timber.w("setVolumeBatch() invalid volume at index %s", i);
+                    errors.add(new JSONObject()
+                        .put(KEY_STREAM_TYPE, type)
+                        .put(KEY_ERROR_MESSAGE, "invalid volume level: " + inputVolume));
+                    continue;
+                }
+
+                targetIndices[type] = targetIndex;
             } catch (Exception e) {
-                notifyActionError(callbackContext, "setVolumeBatch error: " + e.getMessage());
-            } finally {
-                // Restart
-                stopVolumeObserverApplyChanges(false);
+                Timber.e(e, "caught error attempting to set stream");
+                errors.add(new JSONObject()
+                    .put(KEY_ERROR_MESSAGE, e.getMessage()));
             }
-        });
+        }
+
+        writeTargetIndices(targetIndices, errors, applied, skipped);
+
+        Timber.d("setVolumeBatch() applied %s, skipped %s, failed %s", applied.length(), skipped.length(), errors.size());
+
+        return new JSONObject()
+            .put(KEY_ERRORS, errors)
+            .put(KEY_APPLIED, applied)
+            .put(KEY_SKIPPED, skipped);
     }
 
-    private void startVolumeListener(CallbackContext callbackContext) {
-        Timber.v("startVolumeListener");
-        volumeListenerCallbackContext = callbackContext;
+    /**
+     * Writes every stream that has a target index and is not already at it, in a single
+     * programmatic change, and records the outcome of each stream in a BatchStreamSetResult.
+     *
+     * @param targetIndices target index per plugin stream type, -1 to leave the stream untouched
+     */
+    private void writeTargetIndices(int[] targetIndices, ArrayList<JSONObject> errors, JSONArray applied, JSONArray skipped) throws JSONException {
+        // Only notify the listener once we know there is something to write
+        boolean isProgrammaticChange = false;
 
-        if (volumeObserver == null) {
-            volumeObserver = new VolumeContentObserver(new Handler(), manager, volumeListenerCallbackContext);
-            cordova.getActivity().getContentResolver().registerContentObserver(Settings.System.CONTENT_URI, true, volumeObserver);
+        try {
+            for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+                if (targetIndices[type] < 0) continue;
+
+                try {
+                    StreamCapabilities.Entry entry = streamCapabilities.get(backend, type);
+                    if (entry == null) throw new IllegalStateException("stream capabilities unavailable");
+
+                    final int targetIndex = targetIndices[type];
+                    final int currentIndex = Utils.getStreamIndex(backend, type);
+
+                    if (currentIndex == targetIndex) {
+                        skipped.put(makeStreamState(type, currentIndex, entry));
+                        continue;
+                    }
+
+                    if (!isProgrammaticChange) {
+                        beginVolumeObserverProgrammaticChange();
+                        isProgrammaticChange = true;
+                    }
+
+                    setStreamIndexExpected(type, currentIndex, targetIndex);
+                    applied.put(makeStreamState(type, targetIndex, entry));
+                } catch (Exception e) {
+                    Timber.e(e, "caught error attempting to set stream");
+                    errors.add(makeStreamError(type, e.getMessage()));
+                }
+            }
+        } finally {
+            if (isProgrammaticChange) endVolumeObserverProgrammaticChange();
+        }
+    }
+
+    private void saveVolumeProfile(String name, JSONObject profileConfig, CallbackContext callbackContext) throws JSONException {
+        if (name.isEmpty()) {
+            notifyActionError(callbackContext, "Volume profile name must not be empty");
+            return;
+        }
+
+        VolumeProfileStore.Profile profile;
+        try {
+            profile = VolumeProfileStore.fromJson(name, profileConfig);
+        } catch (IllegalArgumentException e) {
+            notifyActionError(callbackContext, "Invalid volume profile: " + e.getMessage());
+            return;
+        }
+
+        int mode = profile.audioMode;
+        if (mode != VolumeProfileStore.NO_AUDIO_MODE && mode != SILENT_MODE && mode != VIBRATE_MODE && mode != NORMAL_MODE) {
+            notifyActionError(callbackContext, "Unknown audio mode! " + mode);
+            return;
+        }
+
+        volumeProfiles.save(profile);
+        callbackContext.success();
+    }
+
+    private void getVolumeProfiles(CallbackContext callbackContext) throws JSONException {
+        JSONArray profiles = new JSONArray();
+        for (VolumeProfileStore.Profile profile : volumeProfiles.list()) {
+            profiles.put(VolumeProfileStore.toJson(profile));
+        }
+        callbackContext.success(new JSONObject().put(KEY_PROFILES, profiles));
+    }
+
+    private void deleteVolumeProfile(String name, CallbackContext callbackContext) {
+        if (volumeProfiles.delete(name)) {
+            callbackContext.success();
+        } else {
+            notifyActionError(callbackContext, "Unknown volume profile: " + name);
+        }
+    }
+
+    /**
+     * Applies the stream levels and then the ringer mode of a saved profile, in a single
+     * programmatic change that only writes what differs. The ringer mode goes last, since
+     * raising the ring volume would otherwise take the device out of silent or vibrate mode.
+     * The callback receives a BatchStreamSetResult.
+     */
+    private void applyVolumeProfile(String name, CallbackContext callbackContext) throws JSONException {
+        VolumeProfileStore.Profile profile = volumeProfiles.get(name);
+        if (profile == null) {
+            notifyActionError(callbackContext, "Unknown volume profile: " + name);
+            return;
+        }
+
+        ArrayList<JSONObject> errors = new ArrayList<>();
+        JSONArray applied = new JSONArray();
+        JSONArray skipped = new JSONArray();
+
+        int[] targetIndices = new int[Utils.TYPE_COUNT];
+        Arrays.fill(targetIndices, -1);
+
+        for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+            int volume = profile.volumes[type];
+            if (volume == VolumeProfileStore.NO_VOLUME) continue;
+
+            StreamCapabilities.Entry entry = streamCapabilities.get(backend, type);
+            int targetIndex = entry != null ? toTargetIndex(entry, volume, profile.isScaled(type)) : -1;
+            if (targetIndex < 0) {
+                errors.add(new JSONObject()
+                    .put(KEY_STREAM_TYPE, type)
+                    .put(KEY_ERROR_MESSAGE, entry != null ? "invalid volume level: " + volume : "stream capabilities unavailable"));
+                continue;
+            }
+            targetIndices[type] = targetIndex;
+        }
+
+        beginVolumeObserverProgrammaticChange();
+        try {
+            writeTargetIndices(targetIndices, errors, applied, skipped);
+            if (profile.audioMode != VolumeProfileStore.NO_AUDIO_MODE && !setAudioMode(profile.audioMode)) {
+                errors.add(new JSONObject().put(KEY_ERROR_MESSAGE, "failed to set audio mode " + profile.audioMode));
+            }
+        } finally {
+            endVolumeObserverProgrammaticChange();
+        }
+
+        Timber.d("applyVolumeProfile() %s applied %s, skipped %s, failed %s", name, applied.length(), skipped.length(), errors.size());
+
+        callbackContext.success(new JSONObject()
+            .put(KEY_ERRORS, errors)
+            .put(KEY_APPLIED, applied)
+            .put(KEY_SKIPPED, skipped));
+    }
+
+    /**
+     * Runs a list of commands in order, in a single bridge call. Expected commands:
+     * `{action: "setAudioMode", audioMode}`, `{action: "setVolume", streamType, volume, scaled?}`,
+     * `{action: "setVolumeBatch", streams}`, `{action: "getAudioMode"}`, `{action: "getVolume", streamType}`,
+     * `{action: "getMaxVolume", streamType}` and `{action: "getAudioState"}`.
+     * <p>
+     * Writes share a single programmatic change, so the listener adopts the end state once
+     * instead of after every command. Commands are not atomic: a failed command is reported in
+     * its own result, without undoing the previous ones or skipping the next ones.
+     */
+    private void executeTransaction(JSONArray commands, CallbackContext callbackContext) throws JSONException {
+        Timber.d("executeTransaction() running %s commands", commands.length());
+        JSONArray results = new JSONArray();
+
+        // Read-only transactions leave the listener alone
+        boolean hasWrites = false;
+        for (int i = 0; i < commands.length() && !hasWrites; i++) {
+            JSONObject command = commands.optJSONObject(i);
+            hasWrites = command != null && isWriteAction(command.optString(KEY_ACTION));
+        }
+
+        if (hasWrites) beginVolumeObserverProgrammaticChange();
+        try {
+            for (int i = 0; i < commands.length(); i++) {
+                results.put(runTransactionCommand(commands.optJSONObject(i)));
+            }
+        } finally {
+            if (hasWrites) endVolumeObserverProgrammaticChange();
+        }
+
+        callbackContext.success(new JSONObject().put(KEY_RESULTS, results));
+    }
+
+    /**
+     * @return `{success: true, result?}`, or `{success: false, errorMessage}`
+     */
+    private JSONObject runTransactionCommand(@Nullable JSONObject command) throws JSONException {
+        try {
+            if (command == null) throw new IllegalArgumentException("invalid command");
+
+            String action = command.getString(KEY_ACTION);
+            JSONObject result = switch (action) {
+                case ACTION_SET_MODE -> {
+                    int mode = command.getInt(KEY_AUDIO_MODE);
+                    if (!setAudioMode(mode)) throw new IllegalArgumentException("Unknown audio mode! " + mode);
+                    yield null;
+                }
+                case ACTION_SET_VOLUME -> {
+                    int type = command.getInt(KEY_STREAM_TYPE);
+                    int volume = command.getInt(KEY_VOLUME);
+                    int targetIndex = toTargetIndex(requireStreamCapabilities(type), volume, command.optBoolean(KEY_SCALED, true));
+                    if (targetIndex < 0) throw new IllegalArgumentException("invalid volume level: " + volume);
+                    writeStreamIndex(type, targetIndex);
+                    yield null;
+                }
+                case ACTION_SET_VOLUME_BATCH -> applyVolumeBatch(command);
+                case ACTION_GET_MODE -> readAudioMode();
+                case ACTION_GET_VOLUME -> {
+                    int type = command.getInt(KEY_STREAM_TYPE);
+                    yield readVolume(type, requireStreamCapabilities(type));
+                }
+                case ACTION_GET_MAX_VOLUME -> {
+                    int type = command.getInt(KEY_STREAM_TYPE);
+                    yield new JSONObject().put(KEY_MAX_VOLUME, requireStreamCapabilities(type).maxIndex);
+                }
+                case ACTION_GET_AUDIO_STATE -> readAudioState();
+                default -> throw new IllegalArgumentException("unsupported transaction action: " + action);
+            };
+
+            JSONObject commandResult = new JSONObject().put(KEY_SUCCESS, true);
+            if (result != null) commandResult.put(KEY_RESULT, result);
+            return commandResult;
+        } catch (Exception e) {
+            Timber.e("executeTransaction() command failed: %s", e.getMessage());
+            return new JSONObject()
+                .put(KEY_SUCCESS, false)
+                .put(KEY_ERROR_MESSAGE, e.getMessage());
+        }
+    }
+
+    private static boolean isWriteAction(String action) {
+        return ACTION_SET_MODE.equals(action) || ACTION_SET_VOLUME.equals(action) || ACTION_SET_VOLUME_BATCH.equals(action);
+    }
+
+    private StreamCapabilities.Entry requireStreamCapabilities(int type) {
+        StreamCapabilities.Entry entry = streamCapabilities.get(backend, type);
+        if (entry == null) throw new IllegalArgumentException("Unknown volume type! " + type);
+        return entry;
+    }
+
+    /**
+     * @return the StreamSetState of the stream at `index`, named like a VolumeResult
+     */
+    private static JSONObject makeStreamState(int type, int index, StreamCapabilities.Entry entry) throws JSONException {
+        return new JSONObject()
+            .put(KEY_STREAM_TYPE, type)
+            .put(KEY_VOLUME, index)
+            .put(KEY_SCALED_VOLUME, entry.toPercentage(index));
+    }
+
+    /**
+     * @return the error of a failed stream write, with the index the stream was left at when it
+     * can still be read
+     */
+    private JSONObject makeStreamError(int type, String errorMessage) throws JSONException {
+        JSONObject error = null;
+        try {
+            StreamCapabilities.Entry entry = streamCapabilities.get(backend, type);
+            if (entry != null) error = makeStreamState(type, Utils.getStreamIndex(backend, type), entry);
+        } catch (Exception e) {
+            Timber.w("could not read stream %d after a failed write: %s", type, e.getMessage());
+        }
+
+        if (error == null) error = new JSONObject().put(KEY_STREAM_TYPE, type);
+        return error.put(KEY_ERROR_MESSAGE, errorMessage);
+    }
+
+    /**
+     * Expected config: `{streamTypes: number[], volume: number, scaled?: boolean, durationMs: number, curve?: string}`.
+     * The callback receives a single result once the ramp completes, or is cancelled or replaced.
+     */
+    private void rampVolume(JSONObject rampConfig, CallbackContext callbackContext) throws JSONException {
+        JSONArray streamTypes = rampConfig.getJSONArray(KEY_STREAM_TYPES);
+        int volume = rampConfig.getInt(KEY_VOLUME);
+        boolean scaled = rampConfig.optBoolean(KEY_SCALED, true);
+        long durationMs = rampConfig.optLong(KEY_DURATION_MS, 0);
+        int curve = VolumeRamper.parseCurve(rampConfig.optString(KEY_CURVE, null));
+
+        if (curve == VolumeRamper.CURVE_UNKNOWN) {
+            notifyActionError(callbackContext, "Unknown ramp curve! " + rampConfig.optString(KEY_CURVE, null));
+            return;
         }
 
+        // Later entries for the same stream are ignored
+        int typeMask = 0;
+        int[] types = new int[streamTypes.length()];
+        int[] startIndices = new int[types.length];
+        int[] targetIndices = new int[types.length];
+        int count = 0;
+
+        for (int i = 0; i < types.length; i++) {
+            int type = streamTypes.getInt(i);
+            StreamCapabilities.Entry entry = streamCapabilities.get(backend, type);
+            if (entry == null) {
+                notifyActionError(callbackContext, "Unknown volume type! " + type);
+                return;
+            }
+            if ((typeMask & VolumeSnapshot.bit(type)) != 0) continue;
+
+            int targetIndex = toTargetIndex(entry, volume, scaled);
+            if (targetIndex < 0) {
+                notifyActionError(callbackContext, "invalid volume level: " + volume);
+                return;
+            }
+
+            typeMask |= VolumeSnapshot.bit(type);
+            types[count] = type;
+            startIndices[count] = Utils.getStreamIndex(backend, type);
+            targetIndices[count] = targetIndex;
+            count++;
+        }
+
+        if (count == 0) {
+            notifyActionError(callbackContext, "No stream to ramp");
+            return;
+        }
+
+        volumeRamper.start(
+            Arrays.copyOf(types, count),
+            Arrays.copyOf(startIndices, count),
+            Arrays.copyOf(targetIndices, count),
+            durationMs,
+            curve,
+            (rampTypes, indices, completed) -> notifyRampFinished(rampTypes, indices, completed, callbackContext)
+        );
+    }
+
+    private void notifyRampFinished(int[] types, int[] indices, boolean completed, CallbackContext callbackContext) {
+        // Listeners get the level a ramp reached once, cancelled and replaced ramps are left to the next one
+        if (completed && volumeSyncEngine != null) volumeSyncEngine.publishProgrammaticChange();
+
+        try {
+            JSONArray streams = new JSONArray();
+            for (int i = 0; i < types.length; i++) {
+                StreamCapabilities.Entry entry = streamCapabilities.get(backend, types[i]);
+                if (entry != null) streams.put(makeStreamState(types[i], indices[i], entry));
+            }
+
+            callbackContext.success(new JSONObject()
+                .put(KEY_COMPLETED, completed)
+                .put(KEY_STREAMS, streams));
+        } catch (JSONException e) {
+            notifyActionError(callbackContext, "rampVolume error: " + e.getMessage());
+        }
+    }
+
+    private void cancelVolumeRamp(@Nullable JSONArray streamTypes, CallbackContext callbackContext) throws JSONException {
+        if (streamTypes == null) {
+            volumeRamper.cancelAll();
+        } else {
+            int typeMask = 0;
+            for (int i = 0; i < streamTypes.length(); i++) {
+                int type = streamTypes.getInt(i);
+                if (type >= 0 && type < Utils.TYPE_COUNT) typeMask |= VolumeSnapshot.bit(type);
+            }
+            volumeRamper.cancel(typeMask);
+        }
+        callbackContext.success();
+    }
+
+    /**
+     * Writes one ramp step. The listener adopts the index directly, so the step is neither
+     * reported as a user change nor followed by a full re-read of the streams. Listeners are
+     * sent the level once the ramp completes.
+     */
+    private void writeRampStep(int type, int oldIndex, int index) {
+        volumeTrace.record(type, oldIndex, index, VolumeTraceRecorder.SOURCE_RAMP);
+        if (volumeSyncEngine != null) {
+            volumeSyncEngine.beginProgrammaticChange();
+            volumeSyncEngine.expectStreamIndex(type, index);
+        }
+        Utils.setStreamIndex(backend, type, index);
+        ringerStateCache.onStreamWritten(type);
+        if (volumeSyncEngine != null) volumeSyncEngine.adoptStreamIndex(type, index);
+    }
+
+    /**
+     * Subscribes `callbackContext` to volume events. The first subscriber starts the shared engine
+     * and event source, so the source, coalescing, sync policy, pauseInBackground and
+     * rememberDeviceVolumes options of later subscribers are ignored, while payload, encoding,
+     * stream filter and flow control are per subscriber.
+     */
+    private void startVolumeListener(VolumeListenerOptions options, CallbackContext callbackContext) {
+        Timber.v("startVolumeListener id = %s, source = %s", options.subscriptionId, options.source);
+
+        if (volumeSyncEngine == null) {
+            volumeSyncEngine = new VolumeSyncEngine(
+                new HandlerScheduler(audioHandler),
+                backend,
+                streamCapabilities,
+                this::readAudioRoute,
+                options,
+                diagnostics,
+                volumeTrace
+            );
+            volumeListenerOptions = options;
+            registerVolumeEventSource(volumeSyncEngine, options);
+        }
+
+        volumeSyncEngine.addSubscription(new VolumeSubscription(options, makeListenerEventSink(callbackContext)));
+
         PluginResult pluginResult = new PluginResult(PluginResult.Status.NO_RESULT);
         pluginResult.setKeepCallback(true);
         callbackContext.sendPluginResult(pluginResult);
     }
 
-    private void stopVolumeListener(@Nullable CallbackContext callbackContext) {
-        Timber.v("stopVolumeListener");
+    private static VolumeSubscription.EventSink makeListenerEventSink(CallbackContext callbackContext) {
+        return new VolumeSubscription.EventSink() {
+            @Override
+            public void onVolumeEvent(JSONObject event) {
+                PluginResult result = new PluginResult(PluginResult.Status.OK, event);
+                result.setKeepCallback(true);
+                callbackContext.sendPluginResult(result);
+            }
+
+            @Override
+            public void onVolumeEvent(byte[] event) {
+                PluginResult result = new PluginResult(PluginResult.Status.OK, event);
+                result.setKeepCallback(true);
+                callbackContext.sendPluginResult(result);
+            }
+
+            @Override
+            public void onVolumeEventError(String errorMessage) {
+                PluginResult result = new PluginResult(PluginResult.Status.ERROR, errorMessage);
+                result.setKeepCallback(true);
+                callbackContext.sendPluginResult(result);
+            }
+
+            @Override
+            public void onSubscriptionEnded() {
+                // Releases the JS callbacks without calling them
+                callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.NO_RESULT));
+            }
+        };
+    }
+
+    private void onAudioDevicesChanged() {
+        streamCapabilities.refresh(backend);
+        if (volumeSyncEngine != null) volumeSyncEngine.onRouteChanged(readAudioRoute());
+    }
+
+    /**
+     * Approximates the output route media plays on from the connected devices, the speaker
+     * being used when none of ROUTE_PRIORITY is connected.
+     *
+     * @return one of the DeviceVolumeMemory.ROUTE_* constants
+     */
+    private int readAudioRoute() {
+        int connectedRoutes = 0;
+        for (AudioDeviceInfo device : manager.getDevices(AudioManager.GET_DEVICES_OUTPUTS)) {
+            int route = toRoute(device.getType());
+            if (route != DeviceVolumeMemory.ROUTE_UNKNOWN) connectedRoutes |= 1 << route;
+        }
+
+        for (int route : ROUTE_PRIORITY) {
+            if ((connectedRoutes & (1 << route)) != 0) return route;
+        }
+        return DeviceVolumeMemory.ROUTE_SPEAKER;
+    }
+
+    private static int toRoute(int deviceType) {
+        return switch (deviceType) {
+            case AudioDeviceInfo.TYPE_WIRED_HEADSET, AudioDeviceInfo.TYPE_WIRED_HEADPHONES -> DeviceVolumeMemory.ROUTE_WIRED;
+            case AudioDeviceInfo.TYPE_USB_HEADSET, AudioDeviceInfo.TYPE_USB_DEVICE -> DeviceVolumeMemory.ROUTE_USB;
+            case AudioDeviceInfo.TYPE_BLUETOOTH_A2DP, AudioDeviceInfo.TYPE_BLUETOOTH_SCO, AudioDeviceInfo.TYPE_BLE_HEADSET -> DeviceVolumeMemory.ROUTE_BLUETOOTH;
+            case AudioDeviceInfo.TYPE_HEARING_AID -> DeviceVolumeMemory.ROUTE_HEARING_AID;
+            default -> DeviceVolumeMemory.ROUTE_UNKNOWN;
+        };
+    }
+
+    private void registerVolumeEventSource(VolumeSyncEngine engine, VolumeListenerOptions options) {
+        if (!options.useBroadcastSource() || !registerVolumeChangedReceiver(engine)) {
+            volumeObserver = new VolumeContentObserver(audioHandler, engine, diagnostics);
+            cordova.getActivity().getContentResolver().registerContentObserver(Settings.System.CONTENT_URI, true, volumeObserver);
+        }
+    }
+
+    private void unregisterVolumeEventSource() {
+        if (volumeChangedReceiver != null) {
+            cordova.getActivity().getApplicationContext().unregisterReceiver(volumeChangedReceiver);
+            volumeChangedReceiver = null;
+        }
         if (volumeObserver != null) {
-            volumeObserver.cleanup();
             cordova.getActivity().getContentResolver().unregisterContentObserver(volumeObserver);
             volumeObserver = null;
         }
-        volumeListenerCallbackContext = null;
+    }
+
+    /**
+     * @return true if the broadcast source was registered, false if the caller should
+     * fall back to observing Settings.System
+     */
+    private boolean registerVolumeChangedReceiver(VolumeSyncEngine engine) {
+        VolumeChangedReceiver receiver = new VolumeChangedReceiver(engine);
+        if (!registerAudioThreadReceiver(receiver, new IntentFilter(VolumeChangedReceiver.ACTION_VOLUME_CHANGED))) {
+            Timber.w("falling back to settings observer for the volume listener");
+            return false;
+        }
+        volumeChangedReceiver = receiver;
+        return true;
+    }
+
+    /**
+     * Registers `receiver` for system broadcasts, delivered on the audio thread.
+     *
+     * @return false if the receiver could not be registered
+     */
+    private boolean registerAudioThreadReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        try {
+            Context context = cordova.getActivity().getApplicationContext();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                context.registerReceiver(receiver, filter, null, audioHandler, Context.RECEIVER_NOT_EXPORTED);
+            } else {
+                context.registerReceiver(receiver, filter, null, audioHandler);
+            }
+            return true;
+        } catch (Exception e) {
+            Timber.e(e, "failed to register broadcast receiver");
+            return false;
+        }
+    }
+
+    private void unregisterRingerStateCache() {
+        audioModeListenerCallbackContext = null;
+        try {
+            cordova.getActivity().getApplicationContext().unregisterReceiver(ringerStateCache);
+        } catch (Exception e) {
+            Timber.w("ringer state receiver was not registered");
+        }
+        ringerStateCache.setObserving(false);
+    }
+
+    private void startAudioModeListener(CallbackContext callbackContext) {
+        audioModeListenerCallbackContext = callbackContext;
+
+        PluginResult pluginResult = new PluginResult(PluginResult.Status.NO_RESULT);
+        pluginResult.setKeepCallback(true);
+        callbackContext.sendPluginResult(pluginResult);
+    }
+
+    private void stopAudioModeListener(CallbackContext callbackContext) {
+        audioModeListenerCallbackContext = null;
+        callbackContext.success("Audio mode listener stopped");
+    }
+
+    private void notifyAudioModeListener(int ringerMode) {
+        CallbackContext callbackContext = audioModeListenerCallbackContext;
+        if (callbackContext == null) return;
+
+        try {
+            PluginResult result = new PluginResult(PluginResult.Status.OK, makeAudioModeResult(ringerMode));
+            result.setKeepCallback(true);
+            callbackContext.sendPluginResult(result);
+        } catch (JSONException e) {
+            Timber.e(e, "failed to notify audio mode listener");
+        }
+    }
+
+    /**
+     * Unsubscribes `subscriptionId`, and stops the shared engine and event source once no
+     * subscriber is left. Removed subscribers get a final result that releases their callback.
+     *
+     * @param subscriptionId subscriber to remove, or null to remove every subscriber
+     */
+    private void stopVolumeListener(@Nullable String subscriptionId, @Nullable CallbackContext callbackContext) {
+        Timber.v("stopVolumeListener id = %s", subscriptionId);
+        if (volumeSyncEngine != null && (subscriptionId == null || !volumeSyncEngine.removeSubscription(subscriptionId))) {
+            unregisterVolumeEventSource();
+            volumeSyncEngine.cleanup();
+            volumeSyncEngine = null;
+            volumeListenerOptions = null;
+            isVolumeListenerPaused = false;
+        }
         if (callbackContext != null) {
             callbackContext.success("Volume listener stopped");
         }
     }
 
-    private void setVolume(final int type, final int volume, final CallbackContext callbackContext) {
-        stopVolumeObserverApplyChanges(true);
+    /**
+     * @param volume percentage when `scaled`, raw stream index otherwise
+     */
+    private void setVolume(final int type, final int volume, final boolean scaled, final CallbackContext callbackContext) {
+        Timber.v("setVolume() type = %s, volume = %s, scaled = %s", type, volume, scaled);
 
-        cordova.getActivity().runOnUiThread(() -> {
-            Timber.v("setVolume() type = " + type + ", volume = " + volume);
+        StreamCapabilities.Entry entry = streamCapabilities.get(backend, type);
+        if (entry == null) {
+            String errorMessage = "Unknown type " + type;
+            Timber.e(errorMessage);
+            callbackContext.error(errorMessage);
+            return;
+        }
 
-            if (Utils.convertStreamTypeToNative(type) == Utils.TYPE_UNKNOWN) {
-                String errorMessage = "Unknown type " + type;
-                Timber.e(errorMessage);
-                callbackContext.error(errorMessage);
-                return;
-            }
+        final int targetIndex = toTargetIndex(entry, volume, scaled);
+        if (targetIndex < 0) {
+            notifyActionError(callbackContext, "invalid volume level: " + volume);
+            return;
+        }
 
-            try {
-                int volumePercentage = Utils.getVolumePercentage(manager, type);
-                Utils.setVolumePercentage(manager, type, volumePercentage);
-                callbackContext.success();
-            } catch (Exception e) {
-                notifyActionError(callbackContext, "setStreamVolume error: " + e.getMessage());
-            } finally {
-                stopVolumeObserverApplyChanges(false);
-            }
-        });
+        try {
+            writeStreamIndex(type, targetIndex);
+            callbackContext.success();
+        } catch (Exception e) {
+            notifyActionError(callbackContext, "setStreamVolume error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes `index` to the stream in a programmatic change, unless the stream is already there.
+     */
+    private void writeStreamIndex(int type, int index) {
+        int currentIndex = Utils.getStreamIndex(backend, type);
+        if (currentIndex == index) return;
+
+        beginVolumeObserverProgrammaticChange();
+        try {
+            setStreamIndexExpected(type, currentIndex, index);
+        } finally {
+            endVolumeObserverProgrammaticChange();
+        }
+    }
+
+    /**
+     * Reads every stream, the ringer mode and the notification policy access state in one pass,
+     * so JS can render all of it from a single bridge call.
+     */
+    private void getAudioState(CallbackContext callbackContext) throws JSONException {
+        callbackContext.success(readAudioState());
+    }
+
+    /**
+     * @return the AudioStateResult
+     */
+    private JSONObject readAudioState() throws JSONException {
+        VolumeSnapshot snapshot = new VolumeSnapshot();
+        snapshot.read(backend, streamCapabilities);
+
+        JSONArray streams = new JSONArray();
+        for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+            StreamCapabilities.Entry entry = streamCapabilities.get(backend, type);
+            int index = snapshot.get(type);
+            if (entry == null || index == VolumeSnapshot.UNKNOWN_INDEX) continue;
+
+            streams.put(makeStreamState(type, index, entry).put(KEY_MAX_VOLUME, entry.maxIndex));
+        }
+
+        JSONObject state = readAudioMode();
+        state.put(KEY_STREAMS, streams);
+        state.put(KEY_NOTIFICATION_POLICY_ACCESS_GRANTED, ringerStateCache.isNotificationPolicyAccessGranted());
+        return state;
     }
 
     private void getAudioMode(CallbackContext callbackContext) throws JSONException {
         Timber.d("getAudioMode()");
+        callbackContext.success(readAudioMode());
+    }
 
-        final JSONObject mode = new JSONObject();
+    /**
+     * @return the current ringer mode, as an AudioModeResult
+     */
+    private JSONObject readAudioMode() throws JSONException {
         int currentRingerMode = -1;
-        int audioMode = NORMAL_MODE;
-        String label = "Normal";
 
         try {
-            currentRingerMode = this.manager.getRingerMode();
+            currentRingerMode = ringerStateCache.getRingerMode();
         } catch (Exception e) {
             Timber.e("manager.getRingerMode() ERROR: %s", e.getMessage());
         }
 
+        return makeAudioModeResult(currentRingerMode);
+    }
+
+    private static JSONObject makeAudioModeResult(int currentRingerMode) throws JSONException {
+        final JSONObject mode = new JSONObject();
+        int audioMode = NORMAL_MODE;
+        String label = "Normal";
+
         switch (currentRingerMode) {
             case AudioManager.RINGER_MODE_SILENT:
                 audioMode = SILENT_MODE;
@@ -311,7 +1195,7 @@ public class AudioManagement extends CordovaPlugin {
         mode.put(KEY_AUDIO_MODE, audioMode);
         mode.put(KEY_LABEL, label);
 
-        callbackContext.success(mode);
+        return mode;
     }
 
     private boolean setAudioMode(int mode) {
@@ -334,11 +1218,7 @@ public class AudioManagement extends CordovaPlugin {
         }
 
         try {
-            int currentMode = manager.getRingerMode();
-            if (currentMode != targetMode) {
-                Timber.i("updating audio mode from " + currentMode + " to " + targetMode);
-                manager.setRingerMode(targetMode);
-            }
+            if (ringerStateCache.setRingerMode(targetMode)) expectRingerModeStreams();
             return true;
         } catch (Exception e) {
             Timber.e("setAudioMode() ERROR: %s", e.getMessage());
@@ -346,19 +1226,68 @@ public class AudioManagement extends CordovaPlugin {
         }
     }
 
-    private void requestVolumeChangeToListener(CallbackContext callbackContext) {
-        if (volumeObserver != null) {
-            volumeObserver.requestVolumeChangeToListener();
+    private void requestVolumeChangeToListener(boolean fullResync, CallbackContext callbackContext) {
+        if (volumeSyncEngine != null) {
+            volumeSyncEngine.requestVolumeChangeToListener(fullResync);
             callbackContext.success("Current state emitted");
         } else {
             callbackContext.error("Volume listener not started");
         }
     }
 
+    private void ackVolumeEvent(String subscriptionId, CallbackContext callbackContext) {
+        if (volumeSyncEngine != null && volumeSyncEngine.acknowledgeEvent(subscriptionId)) {
+            callbackContext.success();
+        } else {
+            callbackContext.error("Volume listener not started");
+        }
+    }
+
+    /**
+     * Suspends the volume event source while the app is in the background, when the listener
+     * was started with `pauseInBackground`.
+     */
+    private void pauseVolumeListener() {
+        if (volumeSyncEngine == null || volumeListenerOptions == null || isVolumeListenerPaused) return;
+        if (!volumeListenerOptions.pauseInBackground) return;
+
+        Timber.v("pausing volume listener");
+        unregisterVolumeEventSource();
+        volumeSyncEngine.pause();
+        isVolumeListenerPaused = true;
+    }
+
+    private void resumeVolumeListener() {
+        if (volumeSyncEngine == null || volumeListenerOptions == null || !isVolumeListenerPaused) return;
+
+        Timber.v("resuming volume listener");
+        isVolumeListenerPaused = false;
+        registerVolumeEventSource(volumeSyncEngine, volumeListenerOptions);
+        volumeSyncEngine.resume();
+    }
+
+    @Override
+    public void onPause(boolean multitasking) {
+        super.onPause(multitasking);
+        if (audioThread != null) audioHandler.post(this::pauseVolumeListener);
+    }
+
+    @Override
+    public void onResume(boolean multitasking) {
+        super.onResume(multitasking);
+        if (audioThread != null) audioHandler.post(this::resumeVolumeListener);
+    }
+
     @Override
     public void onDestroy() {
-        stopVolumeListener(null);
-        if (volumeObserver != null) volumeObserver.cleanup();
+        if (manager != null) manager.unregisterAudioDeviceCallback(audioDeviceCallback);
+        if (audioThread != null) {
+            // Pending actions still run before the thread quits
+            audioHandler.post(volumeRamper::cancelAll);
+            audioHandler.post(() -> stopVolumeListener(null, null));
+            audioHandler.post(this::unregisterRingerStateCache);
+            audioThread.quitSafely();
+        }
         super.onDestroy();
     }
 }
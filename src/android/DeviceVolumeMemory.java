@@ -0,0 +1,45 @@
+package com.hrs.audiomanagement;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Last known index of every stream for each output route, so that the levels the user had on
+ * a headset or a Bluetooth device can be restored as soon as it is connected again.
+ * <p>
+ * Routes are coarse output device categories rather than individual devices, matching how the
+ * OS keeps per-device volumes. Kept in memory only, for the lifetime of the volume listener.
+ * Must only be used from the plugin's audio thread.
+ */
+class DeviceVolumeMemory {
+    public static final int ROUTE_UNKNOWN = -1;
+    public static final int ROUTE_SPEAKER = 0;
+    public static final int ROUTE_WIRED = 1;
+    public static final int ROUTE_USB = 2;
+    public static final int ROUTE_BLUETOOTH = 3;
+    public static final int ROUTE_HEARING_AID = 4;
+
+    private static final String[] ROUTE_NAMES = {"speaker", "wired", "usb", "bluetooth", "hearingAid"};
+
+    // Indexed by ROUTE_*, null until the route was left at least once
+    private final VolumeSnapshot[] snapshots = new VolumeSnapshot[ROUTE_NAMES.length];
+
+    public static String getRouteName(int route) {
+        return ROUTE_NAMES[route];
+    }
+
+    /**
+     * Records `state` as the levels to restore when `route` becomes active again.
+     */
+    public void remember(int route, VolumeSnapshot state) {
+        if (snapshots[route] == null) snapshots[route] = new VolumeSnapshot();
+        snapshots[route].copyFrom(state);
+    }
+
+    /**
+     * @return the levels last seen on `route`, or null if it was never left
+     */
+    @Nullable
+    public VolumeSnapshot get(int route) {
+        return snapshots[route];
+    }
+}
@@ -0,0 +1,24 @@
+package com.hrs.audiomanagement;
+
+import android.os.Handler;
+
+/**
+ * {@link VolumeSyncEngine.Scheduler} backed by an Android {@link Handler}.
+ */
+class HandlerScheduler implements VolumeSyncEngine.Scheduler {
+    private final Handler handler;
+
+    public HandlerScheduler(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+        handler.postDelayed(task, delayMillis);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        handler.removeCallbacks(task);
+    }
+}
@@ -0,0 +1,155 @@
+package com.hrs.audiomanagement;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size counters and per-action latency histograms, cheap enough to stay enabled in
+ * production builds. Recording never allocates, only {@link #toJson()} does.
+ * <p>
+ * Must only be used from the plugin's audio thread.
+ */
+class PluginDiagnostics {
+    // Volume change callbacks received by the listener, from any event source
+    public static final int COUNTER_VOLUME_CALLBACKS = 0;
+    // Settings.System changes dropped because they are not about volume
+    public static final int COUNTER_UNRELATED_SETTINGS_CHANGES = 1;
+    // Callbacks ignored because they reported an index written by the plugin
+    public static final int COUNTER_ECHOES_IGNORED = 2;
+    // Callbacks ignored because no stream actually changed
+    public static final int COUNTER_UNCHANGED_CALLBACKS = 3;
+    // Changes merged into a pending one by the coalescing window
+    public static final int COUNTER_COALESCED_CALLBACKS = 4;
+    // Syncs that failed, and were therefore not reported to JS
+    public static final int COUNTER_FAILED_SYNCS = 5;
+    // Calls made to the system AudioManager
+    public static final int COUNTER_AUDIO_MANAGER_CALLS = 6;
+    // Events sent to the JS listener
+    public static final int COUNTER_EVENTS_SENT = 7;
+    // Events sent on acknowledgement, each replacing the states held while JS was busy
+    public static final int COUNTER_HELD_EVENTS_SENT = 8;
+    // Callbacks dropped because the listener was paused or stopped by the time they were delivered
+    public static final int COUNTER_STALE_CALLBACKS = 9;
+
+    private static final String[] COUNTER_NAMES = {
+        "volumeCallbacks",
+        "unrelatedSettingsChanges",
+        "echoesIgnored",
+        "unchangedCallbacks",
+        "coalescedCallbacks",
+        "failedSyncs",
+        "audioManagerCalls",
+        "eventsSent",
+        "heldEventsSent",
+        "staleCallbacks"
+    };
+
+    // Upper bound (exclusive) of each histogram bucket, the last bucket holds everything above
+    private static final long[] BUCKET_UPPER_BOUNDS_MICROS = {
+        50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000
+    };
+    private static final int BUCKET_COUNT = BUCKET_UPPER_BOUNDS_MICROS.length + 1;
+
+    private static final String OTHER_ACTION = "other";
+
+    private static final String KEY_ACTIONS = "actions";
+    private static final String KEY_COUNTERS = "counters";
+    private static final String KEY_BUCKET_UPPER_BOUNDS = "bucketUpperBoundsMicros";
+    private static final String KEY_COUNT = "count";
+    private static final String KEY_TOTAL = "totalMicros";
+    private static final String KEY_MAX = "maxMicros";
+    private static final String KEY_HISTOGRAM = "histogram";
+
+    private final String[] actions;
+    private final long[] counters = new long[COUNTER_NAMES.length];
+    // Indexed by action slot, the last slot collects actions that are not in `actions`
+    private final long[][] histograms;
+    private final long[] actionCounts;
+    private final long[] actionTotalMicros;
+    private final long[] actionMaxMicros;
+
+    public PluginDiagnostics(String[] actions) {
+        this.actions = actions;
+        int slots = actions.length + 1;
+        this.histograms = new long[slots][BUCKET_COUNT];
+        this.actionCounts = new long[slots];
+        this.actionTotalMicros = new long[slots];
+        this.actionMaxMicros = new long[slots];
+    }
+
+    public void increment(int counter) {
+        counters[counter]++;
+    }
+
+    /**
+     * @param elapsedNanos time between the action reaching the plugin and its completion
+     */
+    public void recordAction(String action, long elapsedNanos) {
+        int slot = actionSlot(action);
+        long micros = elapsedNanos / 1_000;
+
+        int bucket = 0;
+        while (bucket < BUCKET_UPPER_BOUNDS_MICROS.length && micros >= BUCKET_UPPER_BOUNDS_MICROS[bucket]) {
+            bucket++;
+        }
+
+        histograms[slot][bucket]++;
+        actionCounts[slot]++;
+        actionTotalMicros[slot] += micros;
+        if (micros > actionMaxMicros[slot]) actionMaxMicros[slot] = micros;
+    }
+
+    private int actionSlot(String action) {
+        for (int i = 0; i < actions.length; i++) {
+            if (actions[i].equals(action)) return i;
+        }
+        return actions.length;
+    }
+
+    public void reset() {
+        Arrays.fill(counters, 0);
+        Arrays.fill(actionCounts, 0);
+        Arrays.fill(actionTotalMicros, 0);
+        Arrays.fill(actionMaxMicros, 0);
+        for (long[] histogram : histograms) {
+            Arrays.fill(histogram, 0);
+        }
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject actionStats = new JSONObject();
+        for (int slot = 0; slot < actionCounts.length; slot++) {
+            if (actionCounts[slot] == 0) continue;
+
+            JSONArray histogram = new JSONArray();
+            for (long bucketCount : histograms[slot]) {
+                histogram.put(bucketCount);
+            }
+
+            String name = slot < actions.length ? actions[slot] : OTHER_ACTION;
+            actionStats.put(name, new JSONObject()
+                .put(KEY_COUNT, actionCounts[slot])
+                .put(KEY_TOTAL, actionTotalMicros[slot])
+                .put(KEY_MAX, actionMaxMicros[slot])
+                .put(KEY_HISTOGRAM, histogram));
+        }
+
+        JSONObject counterValues = new JSONObject();
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            counterValues.put(COUNTER_NAMES[i], counters[i]);
+        }
+
+        JSONArray bucketUpperBounds = new JSONArray();
+        for (long bound : BUCKET_UPPER_BOUNDS_MICROS) {
+            bucketUpperBounds.put(bound);
+        }
+
+        return new JSONObject()
+            .put(KEY_ACTIONS, actionStats)
+            .put(KEY_COUNTERS, counterValues)
+            .put(KEY_BUCKET_UPPER_BOUNDS, bucketUpperBounds);
+    }
+}
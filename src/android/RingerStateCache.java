@@ -0,0 +1,143 @@
+package com.hrs.audiomanagement;
+
+import android.app.NotificationManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioManager;
+
+import androidx.annotation.Nullable;
+
+import timber.log.Timber;
+
+/**
+ * Caches the ringer mode and the notification policy access state, so that reading them
+ * does not cost a binder IPC every time.
+ * <p>
+ * The cache is kept up to date by RINGER_MODE_CHANGED_ACTION and
+ * ACTION_NOTIFICATION_POLICY_ACCESS_GRANTED_CHANGED, and falls back to reading through
+ * while it is not registered for them. Must only be used from the plugin's audio thread,
+ * which is also where its broadcasts are delivered.
+ */
+class RingerStateCache extends BroadcastReceiver {
+    /**
+     * Notified when the ringer mode changes, whoever changed it.
+     */
+    public interface RingerModeListener {
+        void onRingerModeChanged(int ringerMode);
+    }
+
+    private static final int UNKNOWN = -1;
+
+    private final AudioBackend backend;
+    private final NotificationManager notificationManager;
+
+    private boolean isObserving = false;
+    private int ringerMode = UNKNOWN;
+    // Set by a ring or notification write, the OS may have changed the mode ahead of its broadcast
+    private boolean isRingerModeStale = false;
+    // 1 when granted, 0 when not, UNKNOWN until first read
+    private int policyAccessGranted = UNKNOWN;
+
+    @Nullable
+    private RingerModeListener ringerModeListener;
+
+    public RingerStateCache(AudioBackend backend, NotificationManager notificationManager) {
+        this.backend = backend;
+        this.notificationManager = notificationManager;
+    }
+
+    public static IntentFilter makeIntentFilter() {
+        IntentFilter filter = new IntentFilter(AudioManager.RINGER_MODE_CHANGED_ACTION);
+        filter.addAction(NotificationManager.ACTION_NOTIFICATION_POLICY_ACCESS_GRANTED_CHANGED);
+        return filter;
+    }
+
+    /**
+     * @param observing whether this receiver is registered, values are only cached while it is
+     */
+    public void setObserving(boolean observing) {
+        isObserving = observing;
+        if (!observing) {
+            ringerMode = UNKNOWN;
+            isRingerModeStale = false;
+            policyAccessGranted = UNKNOWN;
+        }
+    }
+
+    public void setRingerModeListener(@Nullable RingerModeListener listener) {
+        ringerModeListener = listener;
+    }
+
+    public int getRingerMode() {
+        if (!isObserving || ringerMode == UNKNOWN || isRingerModeStale) return readRingerMode();
+        return ringerMode;
+    }
+
+    public boolean isNotificationPolicyAccessGranted() {
+        if (!isObserving || policyAccessGranted == UNKNOWN) {
+            boolean granted = notificationManager.isNotificationPolicyAccessGranted();
+            if (!isObserving) return granted;
+            policyAccessGranted = granted ? 1 : 0;
+        }
+        return policyAccessGranted == 1;
+    }
+
+    /**
+     * Writes the ringer mode, unless the backend is already in it. The current mode is always
+     * read through, as the OS may have changed it since the last broadcast.
+     *
+     * @return whether the mode was written
+     */
+    public boolean setRingerMode(int mode) {
+        int currentMode = readRingerMode();
+        if (currentMode == mode) return false;
+
+        Timber.i("updating audio mode from %s to %s", currentMode, mode);
+        backend.setRingerMode(mode);
+        // Recorded ahead of its broadcast
+        updateRingerMode(mode);
+        return true;
+    }
+
+    /**
+     * Records a stream written by the plugin. Muting or unmuting the ring or notification stream
+     * makes the OS change the ringer mode, so the next read goes to the backend.
+     */
+    public void onStreamWritten(int type) {
+        if (type == Utils.TYPE_RING || type == Utils.TYPE_NOTIFICATION) isRingerModeStale = true;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+
+        if (AudioManager.RINGER_MODE_CHANGED_ACTION.equals(action)) {
+            int mode = intent.getIntExtra(AudioManager.EXTRA_RINGER_MODE, UNKNOWN);
+            if (mode != UNKNOWN) updateRingerMode(mode);
+        } else if (NotificationManager.ACTION_NOTIFICATION_POLICY_ACCESS_GRANTED_CHANGED.equals(action)) {
+            // The broadcast does not carry the new state, read it on next use
+            policyAccessGranted = UNKNOWN;
+        }
+    }
+
+    private int readRingerMode() {
+        int mode = backend.getRingerMode();
+        isRingerModeStale = false;
+        if (ringerMode == UNKNOWN) {
+            // First read, not a change
+            if (isObserving) ringerMode = mode;
+        } else {
+            updateRingerMode(mode);
+        }
+        return mode;
+    }
+
+    private void updateRingerMode(int mode) {
+        if (!isObserving || mode == ringerMode) return;
+
+        ringerMode = mode;
+        if (ringerModeListener != null) ringerModeListener.onRingerModeChanged(mode);
+    }
+}
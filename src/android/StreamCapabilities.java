@@ -0,0 +1,111 @@
+package com.hrs.audiomanagement;
+
+import androidx.annotation.Nullable;
+
+import timber.log.Timber;
+
+/**
+ * Caches the per-stream index range reported by the OS, along with precomputed
+ * percentage <-> index lookup tables, so that volume reads and writes do not need
+ * to call `getStreamMaxVolume` / `getStreamMinVolume` (binder IPCs) every time.
+ * <p>
+ * The cache is filled once when the plugin initializes and refreshed when audio routing
+ * changes, since some devices report different ranges per output device.
+ */
+class StreamCapabilities {
+    private static final int MAX_PERCENTAGE = 100;
+
+    static final class Entry {
+        final int minIndex;
+        final int maxIndex;
+        // Index into this table with a percentage in range [0, 100]
+        private final int[] percentageToIndex;
+        // Index into this table with a stream index in range [0, maxIndex]
+        private final int[] indexToPercentage;
+
+        Entry(int minIndex, int maxIndex) {
+            this.minIndex = minIndex;
+            this.maxIndex = maxIndex;
+            this.percentageToIndex = new int[MAX_PERCENTAGE + 1];
+            this.indexToPercentage = new int[Math.max(maxIndex, 0) + 1];
+
+            for (int percentage = 0; percentage <= MAX_PERCENTAGE; percentage++) {
+                int index = Math.round((float) (maxIndex * percentage) / MAX_PERCENTAGE);
+                percentageToIndex[percentage] = Math.max(index, minIndex);
+            }
+
+            for (int index = 0; index < indexToPercentage.length; index++) {
+                indexToPercentage[index] = maxIndex > 0 ? Math.round((float) index / maxIndex * MAX_PERCENTAGE) : 0;
+            }
+        }
+
+        int toIndex(int percentage) {
+            if (percentage < 0) percentage = 0;
+            return percentageToIndex[Math.min(percentage, MAX_PERCENTAGE)];
+        }
+
+        int toPercentage(int index) {
+            if (index < 0) index = 0;
+            return indexToPercentage[Math.min(index, indexToPercentage.length - 1)];
+        }
+    }
+
+    // Cached for streams the OS does not support, so that they are not probed again until refresh
+    private static final Entry UNSUPPORTED = new Entry(0, 0);
+
+    // Indexed by plugin stream type (see Utils.TYPE_*), replaced as a whole on refresh
+    private volatile Entry[] entries = new Entry[Utils.TYPE_COUNT];
+
+    /**
+     * Re-reads the index range of every known stream type.
+     * Readers on other threads keep using the previous table until this completes.
+     */
+    public void refresh(AudioBackend backend) {
+        Entry[] updated = new Entry[Utils.TYPE_COUNT];
+        for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+            updated[type] = loadOrUnsupported(backend, type);
+        }
+        entries = updated;
+        Timber.d("refreshed stream capabilities");
+    }
+
+    /**
+     * @return the cached capabilities for the given plugin stream type, loading them
+     * on demand if the cache has not been filled yet, or null for unknown types and streams
+     * the OS does not support.
+     */
+    @Nullable
+    public Entry get(AudioBackend backend, int type) {
+        if (type < 0 || type >= Utils.TYPE_COUNT) return null;
+
+        Entry[] current = entries;
+        Entry entry = current[type];
+
+        if (entry == null) {
+            entry = loadOrUnsupported(backend, type);
+            current[type] = entry;
+        }
+
+        return entry != UNSUPPORTED ? entry : null;
+    }
+
+    private static Entry loadOrUnsupported(AudioBackend backend, int type) {
+        Entry entry = load(backend, type);
+        return entry != null ? entry : UNSUPPORTED;
+    }
+
+    @Nullable
+    private static Entry load(AudioBackend backend, int type) {
+        int streamType = Utils.convertStreamTypeToNative(type);
+        if (streamType == Utils.TYPE_UNKNOWN) return null;
+
+        try {
+            int maxIndex = backend.getStreamMaxVolume(streamType);
+            int minIndex = backend.getStreamMinVolume(streamType);
+            return new Entry(minIndex, maxIndex);
+        } catch (Exception e) {
+            Timber.e("load stream capabilities ERROR: %s", e.getMessage());
+            return null;
+        }
+    }
+}
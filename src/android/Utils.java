@@ -2,43 +2,44 @@ package com.hrs.audiomanagement;
 
 import android.media.AudioManager;
 
-import timber.log.Timber;
-
 class Utils {
     public static final int TYPE_RING = 0;
     public static final int TYPE_MUSIC = 1;
     public static final int TYPE_NOTIFICATION = 2;
     public static final int TYPE_SYSTEM = 3;
     public static final int TYPE_VOICE_CALL = 4;
+    public static final int TYPE_ALARM = 5;
+    public static final int TYPE_DTMF = 6;
+    public static final int TYPE_ACCESSIBILITY = 7;
     public static final int TYPE_UNKNOWN = -1;
+    // Number of plugin stream types, used to size per-stream tables
+    public static final int TYPE_COUNT = 8;
 
-    public static int getVolumePercentage(AudioManager manager, int type) {
-        Timber.d("getVolume() type = %s", type);
+    // Name of each plugin stream type in JSON payloads, indexed by type
+    private static final String[] STREAM_KEYS = {
+        "ring", "music", "notification", "system", "voice", "alarm", "dtmf", "accessibility"
+    };
 
-        int volumePercentage = -1;
+    /**
+     * @return the raw index of the stream, in range [0, getStreamMaxVolume()]
+     */
+    public static int getStreamIndex(AudioBackend backend, int type) {
         int streamType = convertStreamTypeToNative(type);
-
         if (streamType == TYPE_UNKNOWN) {
-            return volumePercentage;
-        }
-
-        try {
-            volumePercentage = Math.round((float) manager.getStreamVolume(streamType) / manager.getStreamMaxVolume(streamType) * 100);
-            Timber.d("getVolume() loaded volume = " + volumePercentage + " for type = " + type);
-        } catch (Exception e) {
-            Timber.e("getStreamVolume() ERROR: %s", e.getMessage());
+            throw new IllegalArgumentException("unknown stream type: " + type);
         }
-
-        return volumePercentage;
+        return backend.getStreamVolume(streamType);
     }
 
-    public static void setVolumePercentage(AudioManager audioManager, int type, int volumePercentage) {
+    public static void setStreamIndex(AudioBackend backend, int type, int index) {
         int streamType = convertStreamTypeToNative(type);
-        int volumeValue = Math.round((float) (audioManager.getStreamMaxVolume(streamType) * volumePercentage) / 100);
+        if (streamType == TYPE_UNKNOWN) {
+            throw new IllegalArgumentException("unknown stream type: " + type);
+        }
 
-        audioManager.setStreamVolume(
+        backend.setStreamVolume(
             streamType,
-            volumeValue,
+            index,
             0  // No flags - silent change without UI
         );
     }
@@ -50,7 +51,35 @@ class Utils {
             case TYPE_RING -> AudioManager.STREAM_RING;
             case TYPE_MUSIC -> AudioManager.STREAM_MUSIC;
             case TYPE_NOTIFICATION -> AudioManager.STREAM_NOTIFICATION;
+            case TYPE_ALARM -> AudioManager.STREAM_ALARM;
+            case TYPE_DTMF -> AudioManager.STREAM_DTMF;
+            case TYPE_ACCESSIBILITY -> AudioManager.STREAM_ACCESSIBILITY;
+            default -> TYPE_UNKNOWN;
+        };
+    }
+
+    public static int convertStreamTypeFromNative(final int streamType) {
+        return switch (streamType) {
+            case AudioManager.STREAM_VOICE_CALL -> TYPE_VOICE_CALL;
+            case AudioManager.STREAM_SYSTEM -> TYPE_SYSTEM;
+            case AudioManager.STREAM_RING -> TYPE_RING;
+            case AudioManager.STREAM_MUSIC -> TYPE_MUSIC;
+            case AudioManager.STREAM_NOTIFICATION -> TYPE_NOTIFICATION;
+            case AudioManager.STREAM_ALARM -> TYPE_ALARM;
+            case AudioManager.STREAM_DTMF -> TYPE_DTMF;
+            case AudioManager.STREAM_ACCESSIBILITY -> TYPE_ACCESSIBILITY;
             default -> TYPE_UNKNOWN;
         };
     }
+
+    public static String convertStreamTypeToKey(final int type) {
+        return type >= 0 && type < TYPE_COUNT ? STREAM_KEYS[type] : null;
+    }
+
+    public static int convertStreamTypeFromKey(final String key) {
+        for (int type = 0; type < TYPE_COUNT; type++) {
+            if (STREAM_KEYS[type].equals(key)) return type;
+        }
+        return TYPE_UNKNOWN;
+    }
 }
@@ -0,0 +1,41 @@
+package com.hrs.audiomanagement;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Alternative event source for {@link VolumeSyncEngine} that listens to the
+ * VOLUME_CHANGED_ACTION broadcast instead of every Settings.System write.
+ * The broadcast carries the stream type and index, so unrelated settings changes
+ * never reach the engine and a real change does not need a full re-read of all streams.
+ */
+class VolumeChangedReceiver extends BroadcastReceiver {
+    public static final String ACTION_VOLUME_CHANGED = "android.media.VOLUME_CHANGED_ACTION";
+    private static final String EXTRA_VOLUME_STREAM_TYPE = "android.media.EXTRA_VOLUME_STREAM_TYPE";
+    private static final String EXTRA_VOLUME_STREAM_VALUE = "android.media.EXTRA_VOLUME_STREAM_VALUE";
+    private static final String EXTRA_PREV_VOLUME_STREAM_VALUE = "android.media.EXTRA_PREV_VOLUME_STREAM_VALUE";
+
+    private final VolumeSyncEngine engine;
+
+    public VolumeChangedReceiver(VolumeSyncEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!ACTION_VOLUME_CHANGED.equals(intent.getAction())) return;
+
+        final int streamType = intent.getIntExtra(EXTRA_VOLUME_STREAM_TYPE, -1);
+        final int index = intent.getIntExtra(EXTRA_VOLUME_STREAM_VALUE, -1);
+        final int previousIndex = intent.getIntExtra(EXTRA_PREV_VOLUME_STREAM_VALUE, -1);
+
+        if (index < 0 || index == previousIndex) return;
+
+        // Ignore streams the plugin does not track
+        final int type = Utils.convertStreamTypeFromNative(streamType);
+        if (type == Utils.TYPE_UNKNOWN) return;
+
+        engine.onStreamVolumeChanged(type, index);
+    }
+}
@@ -0,0 +1,80 @@
+package com.hrs.audiomanagement;
+
+import java.util.Arrays;
+
+/**
+ * Indices the plugin wrote to each stream and has not seen echoed back yet, in write order,
+ * each tagged with the generation of the programmatic change that wrote it.
+ * <p>
+ * Every stream has a small fixed size queue, so recording and matching expectations does not
+ * allocate. When a queue is full the oldest expectation is dropped, its echo is the most likely
+ * to have been lost.
+ */
+class VolumeExpectations {
+    // Writes to the same stream that can be in flight before their echoes are delivered. Ramps
+    // write a step every 10 ms at most, this covers 160 ms of broadcast delivery delay
+    private static final int QUEUE_SIZE = 16;
+
+    // Indexed by type * QUEUE_SIZE + position, oldest first
+    private final int[] indices = new int[Utils.TYPE_COUNT * QUEUE_SIZE];
+    private final int[] generations = new int[Utils.TYPE_COUNT * QUEUE_SIZE];
+    private final int[] counts = new int[Utils.TYPE_COUNT];
+
+    /**
+     * Records that `index` is about to be written to the stream by the change of `generation`.
+     */
+    public void add(int type, int index, int generation) {
+        int start = type * QUEUE_SIZE;
+        if (counts[type] == QUEUE_SIZE) removeFirst(type, 1);
+
+        int position = start + counts[type]++;
+        indices[position] = index;
+        generations[position] = generation;
+    }
+
+    /**
+     * Looks for `index` among the expectations of the stream. Echoes are delivered in write order,
+     * so a match also consumes every older expectation, whose echo was skipped.
+     *
+     * @return true if `index` was expected, false if it was not (the queue is then left untouched)
+     */
+    public boolean consume(int type, int index) {
+        int start = type * QUEUE_SIZE;
+        for (int i = 0; i < counts[type]; i++) {
+            if (indices[start + i] == index) {
+                removeFirst(type, i + 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void clear(int type) {
+        counts[type] = 0;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * Drops the expectations of every change up to and including `generation`.
+     */
+    public void expire(int generation) {
+        for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+            int start = type * QUEUE_SIZE;
+            int expired = 0;
+            // Generations only grow, so a stream's expired expectations are at the head of its queue
+            while (expired < counts[type] && generations[start + expired] - generation <= 0) expired++;
+            if (expired > 0) removeFirst(type, expired);
+        }
+    }
+
+    private void removeFirst(int type, int count) {
+        int start = type * QUEUE_SIZE;
+        int remaining = counts[type] - count;
+        System.arraycopy(indices, start + count, indices, start, remaining);
+        System.arraycopy(generations, start + count, generations, start, remaining);
+        counts[type] = remaining;
+    }
+}
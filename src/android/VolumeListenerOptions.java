@@ -0,0 +1,130 @@
+package com.hrs.audiomanagement;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Options provided by the JS layer when starting the volume listener.
+ */
+class VolumeListenerOptions {
+    // Observe every write to Settings.System, and re-read the streams to find what changed
+    public static final String SOURCE_SETTINGS = "settings";
+    // Use the VOLUME_CHANGED_ACTION broadcast, which carries the stream type and new index
+    public static final String SOURCE_BROADCAST = "broadcast";
+
+    // Every event carries all streams
+    public static final String PAYLOAD_FULL = "full";
+    // Events carry only the streams that changed since the previous event, plus a sequence number
+    public static final String PAYLOAD_DELTA = "delta";
+
+    // Events are JSON objects
+    public static final String ENCODING_JSON = "json";
+    // Events are packed into an ArrayBuffer, see VolumeSubscription.makeBinaryPluginMessage()
+    public static final String ENCODING_BINARY = "binary";
+
+    // Events are sent as soon as something changes
+    public static final String FLOW_CONTROL_NONE = "none";
+    // After each event, later states are held until JS acknowledges it, and only the latest one is sent
+    public static final String FLOW_CONTROL_ACK = "ack";
+
+    private static final String KEY_SOURCE = "source";
+    private static final String KEY_COALESCE_MS = "coalesceMs";
+    private static final String KEY_PAYLOAD = "payload";
+    private static final String KEY_SYNC_POLICY = "syncPolicy";
+    private static final String KEY_ENCODING = "encoding";
+    private static final String KEY_ID = "id";
+    private static final String KEY_STREAMS = "streams";
+    private static final String KEY_PAUSE_IN_BACKGROUND = "pauseInBackground";
+    private static final String KEY_FLOW_CONTROL = "flowControl";
+    private static final String KEY_REMEMBER_DEVICE_VOLUMES = "rememberDeviceVolumes";
+
+    // Subscription used by callers that do not provide an ID
+    public static final String DEFAULT_SUBSCRIPTION_ID = "default";
+    private static final int ALL_STREAMS = (1 << Utils.TYPE_COUNT) - 1;
+
+    public final String source;
+    // When > 0, changes detected within this window are collapsed into a single sync and event
+    public final int coalesceMs;
+    public final String payload;
+    public final VolumeSyncPolicy syncPolicy;
+    public final String encoding;
+    public final String subscriptionId;
+    // Mask of the streams the subscriber wants in its events (see VolumeSnapshot.bit())
+    public final int streamMask;
+    // Stop observing while the app is in the background, and catch up with a single event on resume
+    public final boolean pauseInBackground;
+    public final String flowControl;
+    // Restore the levels last seen on an output route when it becomes active again
+    public final boolean rememberDeviceVolumes;
+
+    private VolumeListenerOptions(
+        String source,
+        int coalesceMs,
+        String payload,
+        VolumeSyncPolicy syncPolicy,
+        String encoding,
+        String subscriptionId,
+        int streamMask,
+        boolean pauseInBackground,
+        String flowControl,
+        boolean rememberDeviceVolumes
+    ) {
+        this.source = source;
+        this.coalesceMs = Math.max(coalesceMs, 0);
+        this.payload = payload;
+        this.syncPolicy = syncPolicy;
+        this.encoding = encoding;
+        this.subscriptionId = subscriptionId;
+        this.streamMask = streamMask;
+        this.pauseInBackground = pauseInBackground;
+        this.flowControl = flowControl;
+        this.rememberDeviceVolumes = rememberDeviceVolumes;
+    }
+
+    public boolean useDeltaPayload() {
+        return PAYLOAD_DELTA.equals(payload);
+    }
+
+    public boolean useBinaryEncoding() {
+        return ENCODING_BINARY.equals(encoding);
+    }
+
+    public boolean useAckFlowControl() {
+        return FLOW_CONTROL_ACK.equals(flowControl);
+    }
+
+    public boolean useBroadcastSource() {
+        return SOURCE_BROADCAST.equals(source);
+    }
+
+    public static VolumeListenerOptions fromJson(@Nullable JSONObject options) {
+        if (options == null) {
+            return new VolumeListenerOptions(SOURCE_SETTINGS, 0, PAYLOAD_FULL, VolumeSyncPolicy.defaultPolicy(), ENCODING_JSON, DEFAULT_SUBSCRIPTION_ID, ALL_STREAMS, false, FLOW_CONTROL_NONE, false);
+        }
+        return new VolumeListenerOptions(
+            options.optString(KEY_SOURCE, SOURCE_SETTINGS),
+            options.optInt(KEY_COALESCE_MS, 0),
+            options.optString(KEY_PAYLOAD, PAYLOAD_FULL),
+            VolumeSyncPolicy.fromJson(options.optJSONObject(KEY_SYNC_POLICY)),
+            options.optString(KEY_ENCODING, ENCODING_JSON),
+            options.optString(KEY_ID, DEFAULT_SUBSCRIPTION_ID),
+            parseStreamMask(options.optJSONArray(KEY_STREAMS)),
+            options.optBoolean(KEY_PAUSE_IN_BACKGROUND, false),
+            options.optString(KEY_FLOW_CONTROL, FLOW_CONTROL_NONE),
+            options.optBoolean(KEY_REMEMBER_DEVICE_VOLUMES, false)
+        );
+    }
+
+    private static int parseStreamMask(@Nullable JSONArray streams) {
+        if (streams == null) return ALL_STREAMS;
+
+        int mask = 0;
+        for (int i = 0; i < streams.length(); i++) {
+            int type = streams.optInt(i, Utils.TYPE_UNKNOWN);
+            if (type >= 0 && type < Utils.TYPE_COUNT) mask |= VolumeSnapshot.bit(type);
+        }
+        return mask;
+    }
+}
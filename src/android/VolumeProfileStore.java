@@ -0,0 +1,170 @@
+package com.hrs.audiomanagement;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import timber.log.Timber;
+
+/**
+ * Named volume profiles (ringer mode plus stream levels), persisted in their own
+ * SharedPreferences file so JS can switch between them by name.
+ * <p>
+ * Nothing is read from disk until a profile is first used, which keeps plugin initialization
+ * free of I/O. Profiles are then parsed once and kept in memory, writes update both.
+ * Must only be used from the plugin's audio thread.
+ */
+class VolumeProfileStore {
+    // The profile leaves the ringer mode untouched
+    public static final int NO_AUDIO_MODE = -1;
+    // The profile leaves the stream untouched
+    public static final int NO_VOLUME = -1;
+
+    private static final String PREFERENCES_NAME = "AudioManagementVolumeProfiles";
+
+    private static final String KEY_NAME = "name";
+    private static final String KEY_AUDIO_MODE = "audioMode";
+    private static final String KEY_STREAMS = "streams";
+    private static final String KEY_STREAM_TYPE = "streamType";
+    private static final String KEY_VOLUME = "volume";
+    private static final String KEY_SCALED = "scaled";
+
+    static final class Profile {
+        final String name;
+        // Plugin audio mode, or NO_AUDIO_MODE
+        final int audioMode;
+        // Indexed by plugin stream type (see Utils.TYPE_*), NO_VOLUME for streams the profile does not set
+        final int[] volumes;
+        // Mask of the streams whose volume is a raw index rather than a percentage (see VolumeSnapshot.bit())
+        final int rawTypes;
+
+        Profile(String name, int audioMode, int[] volumes, int rawTypes) {
+            this.name = name;
+            this.audioMode = audioMode;
+            this.volumes = volumes;
+            this.rawTypes = rawTypes;
+        }
+
+        boolean isScaled(int type) {
+            return (rawTypes & VolumeSnapshot.bit(type)) == 0;
+        }
+    }
+
+    private final Context context;
+
+    // Loaded on first use, sorted by name
+    @Nullable
+    private SharedPreferences preferences;
+    @Nullable
+    private TreeMap<String, Profile> profiles;
+
+    public VolumeProfileStore(Context context) {
+        this.context = context;
+    }
+
+    @Nullable
+    public Profile get(String name) {
+        return load().get(name);
+    }
+
+    public Collection<Profile> list() {
+        return load().values();
+    }
+
+    /**
+     * Adds the profile, or replaces the one with the same name.
+     */
+    public void save(Profile profile) throws JSONException {
+        load().put(profile.name, profile);
+        preferences.edit().putString(profile.name, toJson(profile).toString()).apply();
+    }
+
+    /**
+     * @return false if there is no profile with this name
+     */
+    public boolean delete(String name) {
+        if (load().remove(name) == null) return false;
+
+        preferences.edit().remove(name).apply();
+        return true;
+    }
+
+    private TreeMap<String, Profile> load() {
+        if (profiles != null) return profiles;
+
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        profiles = new TreeMap<>();
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            try {
+                profiles.put(entry.getKey(), fromJson(entry.getKey(), new JSONObject((String) entry.getValue())));
+            } catch (Exception e) {
+                Timber.w("ignoring unreadable volume profile %s: %s", entry.getKey(), e.getMessage());
+            }
+        }
+        Timber.d("loaded %s volume profiles", profiles.size());
+        return profiles;
+    }
+
+    /**
+     * Expected shape: `{audioMode?: number, streams: [{streamType, volume, scaled?}, ...]}`,
+     * later entries for the same stream win.
+     *
+     * @throws IllegalArgumentException if a stream type or volume is invalid
+     */
+    public static Profile fromJson(String name, JSONObject json) throws JSONException {
+        int[] volumes = new int[Utils.TYPE_COUNT];
+        Arrays.fill(volumes, NO_VOLUME);
+        int rawTypes = 0;
+
+        JSONArray streams = json.getJSONArray(KEY_STREAMS);
+        for (int i = 0; i < streams.length(); i++) {
+            JSONObject stream = streams.getJSONObject(i);
+            int type = stream.getInt(KEY_STREAM_TYPE);
+            if (type < 0 || type >= Utils.TYPE_COUNT) throw new IllegalArgumentException("unknown stream type: " + type);
+
+            int volume = stream.getInt(KEY_VOLUME);
+            boolean scaled = stream.optBoolean(KEY_SCALED, true);
+            if (volume < 0 || (scaled && volume > 100)) throw new IllegalArgumentException("invalid volume level: " + volume);
+
+            volumes[type] = volume;
+            if (scaled) {
+                rawTypes &= ~VolumeSnapshot.bit(type);
+            } else {
+                rawTypes |= VolumeSnapshot.bit(type);
+            }
+        }
+
+        return new Profile(name, json.optInt(KEY_AUDIO_MODE, NO_AUDIO_MODE), volumes, rawTypes);
+    }
+
+    /**
+     * @return the profile in the shape read by {@link #fromJson(String, JSONObject)}, plus its name
+     */
+    public static JSONObject toJson(Profile profile) throws JSONException {
+        JSONArray streams = new JSONArray();
+        for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+            if (profile.volumes[type] == NO_VOLUME) continue;
+
+            streams.put(new JSONObject()
+                .put(KEY_STREAM_TYPE, type)
+                .put(KEY_VOLUME, profile.volumes[type])
+                .put(KEY_SCALED, profile.isScaled(type)));
+        }
+
+        JSONObject json = new JSONObject()
+            .put(KEY_NAME, profile.name)
+            .put(KEY_STREAMS, streams);
+        if (profile.audioMode != NO_AUDIO_MODE) json.put(KEY_AUDIO_MODE, profile.audioMode);
+        return json;
+    }
+}
@@ -0,0 +1,184 @@
+package com.hrs.audiomanagement;
+
+import androidx.annotation.Nullable;
+
+import timber.log.Timber;
+
+/**
+ * Runs volume ramps (fades) natively, one scheduled step at a time, so JS does not have to
+ * drive them with a timer and one bridge call per step.
+ * <p>
+ * Each step only writes the streams whose index actually changes. A stream belongs to at most
+ * one ramp: starting a ramp on a stream takes it over from the ramp that was running on it,
+ * and a ramp left without streams finishes as not completed.
+ * <p>
+ * Must only be used from the thread its {@link VolumeSyncEngine.Scheduler} runs tasks on
+ * (the plugin's audio thread).
+ */
+class VolumeRamper {
+    public static final int CURVE_UNKNOWN = -1;
+    public static final int CURVE_LINEAR = 0;
+    public static final int CURVE_EASE_IN = 1;
+    public static final int CURVE_EASE_OUT = 2;
+    public static final int CURVE_EASE_IN_OUT = 3;
+
+    private static final String[] CURVE_NAMES = {"linear", "easeIn", "easeOut", "easeInOut"};
+
+    // Steps are spread over the ramp so that each one moves about one index, but never closer than this
+    private static final long MIN_STEP_INTERVAL_MS = 10;
+
+    /**
+     * Writes one step of a ramp to the stream.
+     */
+    public interface StepWriter {
+        void writeRampStep(int type, int oldIndex, int index);
+    }
+
+    /**
+     * Called once per ramp, when it reaches its target or when it is cancelled or replaced.
+     */
+    public interface FinishListener {
+        /**
+         * @param types     streams the ramp was started on
+         * @param indices   index each stream was left at by the ramp, in the same order
+         * @param completed true if every stream reached its target
+         */
+        void onRampFinished(int[] types, int[] indices, boolean completed);
+    }
+
+    private final class Ramp implements Runnable {
+        final int[] types;
+        final int[] startIndices;
+        final int[] targetIndices;
+        final int[] currentIndices;
+        final long durationMs;
+        final long stepIntervalMs;
+        final int curve;
+        final FinishListener finishListener;
+        final long startedAt = System.nanoTime();
+        // Mask of the streams still driven by this ramp (see VolumeSnapshot.bit())
+        int activeTypes;
+        // Set when a stream was cancelled or taken over by another ramp before reaching its target
+        boolean interrupted = false;
+
+        Ramp(int[] types, int[] startIndices, int[] targetIndices, long durationMs, int curve, FinishListener finishListener) {
+            this.types = types;
+            this.startIndices = startIndices;
+            this.targetIndices = targetIndices;
+            this.currentIndices = startIndices.clone();
+            this.durationMs = durationMs;
+            this.curve = curve;
+            this.finishListener = finishListener;
+
+            int maxSteps = 1;
+            for (int i = 0; i < types.length; i++) {
+                activeTypes |= VolumeSnapshot.bit(types[i]);
+                maxSteps = Math.max(maxSteps, Math.abs(targetIndices[i] - startIndices[i]));
+            }
+            this.stepIntervalMs = Math.max(durationMs / maxSteps, MIN_STEP_INTERVAL_MS);
+        }
+
+        @Override
+        public void run() {
+            long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+            double progress = durationMs > 0 ? Math.min((double) elapsedMs / durationMs, 1) : 1;
+            double fraction = applyCurve(curve, progress);
+
+            try {
+                for (int i = 0; i < types.length; i++) {
+                    if ((activeTypes & VolumeSnapshot.bit(types[i])) == 0) continue;
+
+                    int index = progress >= 1
+                        ? targetIndices[i]
+                        : (int) Math.round(startIndices[i] + (targetIndices[i] - startIndices[i]) * fraction);
+                    if (index == currentIndices[i]) continue;
+
+                    writer.writeRampStep(types[i], currentIndices[i], index);
+                    currentIndices[i] = index;
+                }
+            } catch (Exception e) {
+                Timber.e(e, "volume ramp step failed: %s", e.getMessage());
+                finish(this, false);
+                return;
+            }
+
+            if (progress >= 1) {
+                finish(this, true);
+            } else {
+                scheduler.postDelayed(this, stepIntervalMs);
+            }
+        }
+    }
+
+    private final VolumeSyncEngine.Scheduler scheduler;
+    private final StepWriter writer;
+    // Ramp currently driving each stream, indexed by plugin stream type (see Utils.TYPE_*)
+    private final Ramp[] rampsByType = new Ramp[Utils.TYPE_COUNT];
+
+    public VolumeRamper(VolumeSyncEngine.Scheduler scheduler, StepWriter writer) {
+        this.scheduler = scheduler;
+        this.writer = writer;
+    }
+
+    /**
+     * @return the CURVE_* constant for `name`, CURVE_LINEAR when null, or CURVE_UNKNOWN
+     */
+    public static int parseCurve(@Nullable String name) {
+        if (name == null) return CURVE_LINEAR;
+        for (int curve = 0; curve < CURVE_NAMES.length; curve++) {
+            if (CURVE_NAMES[curve].equals(name)) return curve;
+        }
+        return CURVE_UNKNOWN;
+    }
+
+    private static double applyCurve(int curve, double progress) {
+        return switch (curve) {
+            case CURVE_EASE_IN -> progress * progress;
+            case CURVE_EASE_OUT -> 1 - (1 - progress) * (1 - progress);
+            case CURVE_EASE_IN_OUT -> progress * progress * (3 - 2 * progress);
+            default -> progress;
+        };
+    }
+
+    /**
+     * Starts ramping every stream in `types` from its start index to its target index, replacing
+     * any ramp already running on those streams. The first step runs right away.
+     */
+    public void start(int[] types, int[] startIndices, int[] targetIndices, long durationMs, int curve, FinishListener finishListener) {
+        int typeMask = 0;
+        for (int type : types) typeMask |= VolumeSnapshot.bit(type);
+        cancel(typeMask);
+
+        Ramp ramp = new Ramp(types, startIndices, targetIndices, Math.max(durationMs, 0), curve, finishListener);
+        for (int type : types) rampsByType[type] = ramp;
+        ramp.run();
+    }
+
+    /**
+     * Stops the streams in `typeMask` where they are, ramps left without streams finish as not completed.
+     */
+    public void cancel(int typeMask) {
+        for (int type = 0; type < rampsByType.length; type++) {
+            Ramp ramp = rampsByType[type];
+            if (ramp == null || (typeMask & VolumeSnapshot.bit(type)) == 0) continue;
+
+            rampsByType[type] = null;
+            ramp.activeTypes &= ~VolumeSnapshot.bit(type);
+            ramp.interrupted = true;
+            if (ramp.activeTypes == 0) finish(ramp, false);
+        }
+    }
+
+    public void cancelAll() {
+        cancel(~0);
+    }
+
+    private void finish(Ramp ramp, boolean completed) {
+        scheduler.cancel(ramp);
+        for (int type = 0; type < rampsByType.length; type++) {
+            if (rampsByType[type] == ramp) rampsByType[type] = null;
+        }
+        ramp.activeTypes = 0;
+        ramp.finishListener.onRampFinished(ramp.types, ramp.currentIndices, completed && !ramp.interrupted);
+    }
+}
@@ -0,0 +1,78 @@
+package com.hrs.audiomanagement;
+
+import java.util.Arrays;
+
+/**
+ * Raw index of every stream at a point in time, keyed by plugin stream type (see Utils.TYPE_*).
+ * <p>
+ * Snapshots are meant to be allocated once and refilled, so that reading and diffing
+ * stream state does not allocate per callback.
+ */
+class VolumeSnapshot {
+    // Stream is not supported on this device, or could not be read
+    public static final int UNKNOWN_INDEX = -1;
+
+    private final int[] indices = new int[Utils.TYPE_COUNT];
+
+    public VolumeSnapshot() {
+        clear();
+    }
+
+    public static int bit(int type) {
+        return 1 << type;
+    }
+
+    public int get(int type) {
+        return indices[type];
+    }
+
+    public void set(int type, int index) {
+        indices[type] = index;
+    }
+
+    public void clear() {
+        Arrays.fill(indices, UNKNOWN_INDEX);
+    }
+
+    public void copyFrom(VolumeSnapshot other) {
+        System.arraycopy(other.indices, 0, indices, 0, indices.length);
+    }
+
+    /**
+     * Reads every stream supported by the device, with one call per stream.
+     */
+    public void read(AudioBackend backend, StreamCapabilities capabilities) {
+        for (int type = 0; type < indices.length; type++) {
+            indices[type] = capabilities.get(backend, type) != null ? readIndex(backend, type) : UNKNOWN_INDEX;
+        }
+    }
+
+    /**
+     * Reads the streams of the `types` mask (see {@link #bit(int)}) only, the others keep their index.
+     */
+    public void read(AudioBackend backend, StreamCapabilities capabilities, int types) {
+        for (int type = 0; type < indices.length; type++) {
+            if ((types & bit(type)) == 0) continue;
+            indices[type] = capabilities.get(backend, type) != null ? readIndex(backend, type) : UNKNOWN_INDEX;
+        }
+    }
+
+    private static int readIndex(AudioBackend backend, int type) {
+        try {
+            return Utils.getStreamIndex(backend, type);
+        } catch (Exception e) {
+            return UNKNOWN_INDEX;
+        }
+    }
+
+    /**
+     * @return a mask of the stream types (see {@link #bit(int)}) whose index differs from `previous`
+     */
+    public int diff(VolumeSnapshot previous) {
+        int changed = 0;
+        for (int type = 0; type < indices.length; type++) {
+            if (indices[type] != previous.indices[type]) changed |= bit(type);
+        }
+        return changed;
+    }
+}
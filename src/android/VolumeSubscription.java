@@ -0,0 +1,242 @@
+package com.hrs.audiomanagement;
+
+import static com.hrs.audiomanagement.Utils.TYPE_ACCESSIBILITY;
+import static com.hrs.audiomanagement.Utils.TYPE_ALARM;
+import static com.hrs.audiomanagement.Utils.TYPE_DTMF;
+import static com.hrs.audiomanagement.Utils.TYPE_MUSIC;
+import static com.hrs.audiomanagement.Utils.TYPE_NOTIFICATION;
+import static com.hrs.audiomanagement.Utils.TYPE_RING;
+import static com.hrs.audiomanagement.Utils.TYPE_SYSTEM;
+import static com.hrs.audiomanagement.Utils.TYPE_VOICE_CALL;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One JS subscriber of the volume listener. Every subscriber has its own stream filter, payload
+ * and encoding, and keeps track of what it was last sent, while the streams are read and synced
+ * once by the shared {@link VolumeSyncEngine}.
+ * <p>
+ * With ack flow control, a subscriber has at most one unacknowledged event in flight. States
+ * published meanwhile are not queued: the next event is built on acknowledgement, from the
+ * latest state only, so a busy WebView never replays stale intermediate states.
+ * <p>
+ * Must only be used from the plugin's audio thread.
+ */
+class VolumeSubscription {
+    /**
+     * Receives the events meant for the JS subscriber.
+     */
+    public interface EventSink {
+        void onVolumeEvent(JSONObject event);
+
+        /**
+         * Receives events when the subscriber uses the binary encoding.
+         */
+        void onVolumeEvent(byte[] event);
+
+        void onVolumeEventError(String errorMessage);
+
+        /**
+         * Called once the subscriber was removed or the listener stopped, no event follows.
+         */
+        void onSubscriptionEnded();
+    }
+
+    // Order of the streams in JSON events
+    private static final int[] MESSAGE_STREAM_TYPES = {
+        TYPE_RING, TYPE_NOTIFICATION, TYPE_SYSTEM, TYPE_MUSIC, TYPE_VOICE_CALL, TYPE_ALARM, TYPE_DTMF, TYPE_ACCESSIBILITY
+    };
+    private static final String KEY_SEQUENCE = "seq";
+    private static final String KEY_TIMESTAMP = "timestamp";
+    private static final String KEY_FULL = "full";
+    private static final String KEY_ROUTE = "route";
+
+    // Layout of binary events, see makeBinaryPluginMessage()
+    private static final byte BINARY_VERSION = 1;
+    private static final byte BINARY_FLAG_FULL = 1;
+    private static final byte BINARY_FLAG_ROUTE = 2;
+    private static final int BINARY_HEADER_SIZE = 16;
+    private static final int BINARY_STREAM_SIZE = 3;
+    private static final int BINARY_ROUTE_SIZE = 1;
+
+    private final String id;
+    // Mask of the streams this subscriber asked for (see VolumeSnapshot.bit())
+    private final int streamMask;
+    private final boolean isDelta;
+    private final boolean isBinary;
+    private final boolean isAckFlowControl;
+    private final EventSink eventSink;
+
+    // State of each stream as last sent to this subscriber, used for delta events
+    private final VolumeSnapshot sentSnapshot = new VolumeSnapshot();
+    private long sequence = 0;
+    private boolean fullResyncRequested = true;
+
+    // Ack flow control: whether the last event is still unacknowledged, whether a later state was
+    // held back meanwhile, and whether JS explicitly asked for that state
+    private boolean awaitingAck = false;
+    private boolean hasHeldState = false;
+    private boolean heldRequested = false;
+    private int heldRoute = DeviceVolumeMemory.ROUTE_UNKNOWN;
+
+    public VolumeSubscription(VolumeListenerOptions options, EventSink eventSink) {
+        this.id = options.subscriptionId;
+        this.streamMask = options.streamMask;
+        this.isDelta = options.useDeltaPayload();
+        this.isBinary = options.useBinaryEncoding();
+        this.isAckFlowControl = options.useAckFlowControl();
+        this.eventSink = eventSink;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Lets the subscriber know it will not be sent any more events.
+     */
+    public void end() {
+        eventSink.onSubscriptionEnded();
+    }
+
+    /**
+     * Makes the next event carry every stream of the filter, even when using delta payloads.
+     */
+    public void requestFullResync() {
+        fullResyncRequested = true;
+    }
+
+    /**
+     * Sends the part of `state` this subscriber asked for, if it has anything new.
+     *
+     * @param volumes   percentage of each stream in `state`, indexed by plugin stream type
+     * @param requested true when JS explicitly asked for the current state, full payloads
+     *                  are then sent even when nothing changed
+     * @param route     output route the event reports a change to, or ROUTE_UNKNOWN. Route
+     *                  changes are always sent
+     * @return true if an event was sent, false if there was nothing to send or if it is held
+     * until the previous event is acknowledged
+     */
+    public boolean publish(VolumeSnapshot state, int[] volumes, boolean requested, int route) {
+        int knownTypes = 0;
+        for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+            if (state.get(type) != VolumeSnapshot.UNKNOWN_INDEX) knownTypes |= VolumeSnapshot.bit(type);
+        }
+        knownTypes &= streamMask;
+
+        int changedTypes = state.diff(sentSnapshot) & knownTypes;
+        boolean isFullState = !isDelta || fullResyncRequested;
+
+        // Nothing this subscriber cares about changed
+        boolean hasRoute = route != DeviceVolumeMemory.ROUTE_UNKNOWN;
+        if (changedTypes == 0 && !fullResyncRequested && !(requested && !isDelta) && !hasRoute) return false;
+
+        if (awaitingAck) {
+            hasHeldState = true;
+            heldRequested |= requested;
+            if (hasRoute) heldRoute = route;
+            return false;
+        }
+
+        int includedTypes = isFullState ? knownTypes : changedTypes;
+        if (isDelta || isBinary) sequence++;
+        fullResyncRequested = false;
+        sentSnapshot.copyFrom(state);
+
+        try {
+            if (isBinary) {
+                eventSink.onVolumeEvent(makeBinaryPluginMessage(state, volumes, includedTypes, isFullState, route));
+            } else {
+                eventSink.onVolumeEvent(makePluginMessage(volumes, includedTypes, isFullState, route));
+            }
+            awaitingAck = isAckFlowControl;
+            return true;
+        } catch (JSONException e) {
+            eventSink.onVolumeEventError("Error getting volume info: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Marks the last event as handled by JS, and sends the latest state if one was held meanwhile.
+     *
+     * @param state   current state of the streams, as for {@link #publish(VolumeSnapshot, int[], boolean, int)}
+     * @param volumes percentage of each stream in `state`
+     * @return true if an event was sent
+     */
+    public boolean acknowledge(VolumeSnapshot state, int[] volumes) {
+        awaitingAck = false;
+        if (!hasHeldState) return false;
+
+        boolean requested = heldRequested;
+        int route = heldRoute;
+        hasHeldState = false;
+        heldRequested = false;
+        heldRoute = DeviceVolumeMemory.ROUTE_UNKNOWN;
+        return publish(state, volumes, requested, route);
+    }
+
+    public boolean hasHeldState() {
+        return hasHeldState;
+    }
+
+    /**
+     * @param includedTypes mask of the streams to put in the event (see {@link VolumeSnapshot#bit(int)})
+     */
+    private JSONObject makePluginMessage(int[] volumes, int includedTypes, boolean isFullState, int route) throws JSONException {
+        JSONObject volumeInfo = new JSONObject();
+
+        for (int type : MESSAGE_STREAM_TYPES) {
+            if ((includedTypes & VolumeSnapshot.bit(type)) == 0) continue;
+            volumeInfo.put(Utils.convertStreamTypeToKey(type), volumes[type]);
+        }
+
+        if (route != DeviceVolumeMemory.ROUTE_UNKNOWN) volumeInfo.put(KEY_ROUTE, DeviceVolumeMemory.getRouteName(route));
+
+        if (!isDelta) return volumeInfo;
+
+        volumeInfo.put(KEY_SEQUENCE, sequence);
+        volumeInfo.put(KEY_TIMESTAMP, System.currentTimeMillis());
+        volumeInfo.put(KEY_FULL, isFullState);
+
+        return volumeInfo;
+    }
+
+    /**
+     * Same content as {@link #makePluginMessage(int[], int, boolean, int)}, packed as follows
+     * (big endian, decoded by the TS wrapper):
+     * <pre>
+     * offset 0   u8   format version (BINARY_VERSION)
+     * offset 1   u8   flags, bit 0 set when the event carries every stream, bit 1 when it carries a route
+     * offset 2   u16  mask of the streams in the event, bit N = plugin stream type N
+     * offset 4   u32  sequence number
+     * offset 8   f64  epoch milliseconds at which the event was built
+     * offset 16  per stream in the mask, by ascending type: u16 raw index, u8 volume percentage
+     * then       u8   output route (DeviceVolumeMemory.ROUTE_*), only when flag bit 1 is set
+     * </pre>
+     */
+    private byte[] makeBinaryPluginMessage(VolumeSnapshot state, int[] volumes, int includedTypes, boolean isFullState, int route) {
+        boolean hasRoute = route != DeviceVolumeMemory.ROUTE_UNKNOWN;
+        ByteBuffer buffer = ByteBuffer.allocate(BINARY_HEADER_SIZE
+            + Integer.bitCount(includedTypes) * BINARY_STREAM_SIZE
+            + (hasRoute ? BINARY_ROUTE_SIZE : 0));
+        buffer.put(BINARY_VERSION);
+        buffer.put((byte) ((isFullState ? BINARY_FLAG_FULL : 0) | (hasRoute ? BINARY_FLAG_ROUTE : 0)));
+        buffer.putShort((short) includedTypes);
+        buffer.putInt((int) sequence);
+        buffer.putDouble(System.currentTimeMillis());
+
+        for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+            if ((includedTypes & VolumeSnapshot.bit(type)) == 0) continue;
+
+            buffer.putShort((short) state.get(type));
+            buffer.put((byte) volumes[type]);
+        }
+        if (hasRoute) buffer.put((byte) route);
+
+        return buffer.array();
+    }
+}
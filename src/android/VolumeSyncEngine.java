@@ -0,0 +1,754 @@
+package com.hrs.audiomanagement;
+
+import static com.hrs.audiomanagement.Utils.TYPE_ACCESSIBILITY;
+import static com.hrs.audiomanagement.Utils.TYPE_ALARM;
+import static com.hrs.audiomanagement.Utils.TYPE_DTMF;
+import static com.hrs.audiomanagement.Utils.TYPE_MUSIC;
+import static com.hrs.audiomanagement.Utils.TYPE_NOTIFICATION;
+import static com.hrs.audiomanagement.Utils.TYPE_RING;
+import static com.hrs.audiomanagement.Utils.TYPE_SYSTEM;
+import static com.hrs.audiomanagement.Utils.TYPE_VOICE_CALL;
+import static com.hrs.audiomanagement.Utils.setStreamIndex;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+
+import timber.log.Timber;
+
+/**
+ * Detects volume changes, syncs every stream to the changed value and notifies the JS listener.
+ * One engine serves every {@link VolumeSubscription}: streams are read and synced once per change,
+ * then the resulting state is fanned out to each subscriber.
+ * <p>
+ * Stream state is kept as raw indices in {@link VolumeSnapshot}s: a change callback reads the
+ * streams once, diffs them against the last known snapshot and only looks at the streams that
+ * actually changed. How a user change propagates to the other streams is decided by the
+ * {@link VolumeSyncPolicy} from the listener options, streams it does not link are tracked and
+ * reported without being synced.
+ * <p>
+ * Change notifications come from an event source ({@link VolumeContentObserver} or
+ * {@link VolumeChangedReceiver}). The engine only depends on plain Java interfaces, so it can also
+ * be driven on a JVM with the simulated backend of the jvm build, e.g. to benchmark the listener path.
+ * <p>
+ * Must only be used from the thread its {@link Scheduler} runs tasks on (the plugin's audio thread),
+ * which is also where change callbacks and delayed expectation expiries are delivered. That thread
+ * is the one creating the engine. Programmatic change calls from any other thread throw, since
+ * dropping them would let the write they surround echo back as a user change, and any other call
+ * from another thread is logged and dropped.
+ * <p>
+ * The engine is ACTIVE until {@link #pause()} or {@link #cleanup()}. Callbacks the event source
+ * queued before it was unregistered can still be delivered afterwards, they are dropped rather
+ * than synced and reported twice: {@link #resume()} catches up on what a paused engine missed,
+ * and a released engine must not write to the streams anymore.
+ */
+class VolumeSyncEngine {
+    /**
+     * Runs delayed tasks on the engine's thread.
+     */
+    public interface Scheduler {
+        void postDelayed(Runnable task, long delayMillis);
+
+        void cancel(Runnable task);
+    }
+
+    /**
+     * Reads the active output route, only used when the listener remembers device volumes.
+     */
+    public interface RouteReader {
+        /**
+         * @return one of the DeviceVolumeMemory.ROUTE_* constants
+         */
+        int readRoute();
+    }
+
+    // Order in which streams are checked when looking for the one that changed
+    private static final int[] DETECTION_ORDER = {
+        TYPE_MUSIC, TYPE_RING, TYPE_NOTIFICATION, TYPE_SYSTEM, TYPE_VOICE_CALL, TYPE_ALARM, TYPE_DTMF, TYPE_ACCESSIBILITY
+    };
+
+    private final AudioBackend audioBackend;
+    private final StreamCapabilities capabilities;
+    private final VolumeListenerOptions options;
+    private final VolumeSyncPolicy syncPolicy;
+    private final Scheduler scheduler;
+    private final PluginDiagnostics diagnostics;
+    private final VolumeTraceRecorder trace;
+    // Subscribers the listener events are fanned out to, in subscription order
+    private final ArrayList<VolumeSubscription> subscriptions = new ArrayList<>();
+    private final Runnable expectationExpiryRunnable = this::expireOldestGeneration;
+    private final Thread ownerThread;
+
+    private static final int STATE_ACTIVE = 0;
+    private static final int STATE_PAUSED = 1;
+    private static final int STATE_RELEASED = 2;
+    private int state = STATE_ACTIVE;
+
+    // Passed instead of a reference volume for changes that must be reported without syncing the streams
+    private static final int NO_SYNC_VOLUME = -1;
+
+    // Outcome of a read pass: nothing changed, only echoes of plugin writes, or at least one user change
+    private static final int CHANGES_NONE = 0;
+    private static final int CHANGES_ECHO_ONLY = 1;
+    private static final int CHANGES_USER = 2;
+    // The changes came from the OS switching to another output route
+    private static final int CHANGES_ROUTE = 3;
+
+    // Whether a change is waiting for the current coalescing window to close, and the latest
+    // stream and reference volume to sync the other streams to when it does (or NO_SYNC_VOLUME)
+    private boolean hasPendingChange = false;
+    private int pendingSourceType = Utils.TYPE_UNKNOWN;
+    private int pendingVolume = NO_SYNC_VOLUME;
+    private final Runnable coalesceFlushRunnable = this::flushPendingChange;
+
+    /* Echo cancellation: every index written by the plugin (syncs, setVolume, setVolumeBatch, ramps)
+     * is queued per stream, tagged with the generation of the change that wrote it. A callback
+     * reporting one of those indices is the echo of our own write and is ignored, anything else is
+     * a user change and clears the stream's queue.
+     * Broadcasts carry the value of each write and are delivered in order, so their expectations are
+     * kept until echoed, while any other broadcast may be stale and the stream is read once before
+     * handling it. Callbacks that re-read the streams only ever see the latest state, so once a
+     * read pass adopted it, older writes cannot be echoed anymore and their expectations are cleared.
+     * Each generation expires EXPECTATION_TIMEOUT_MS after it started as an upper bound, in case
+     * a write never produces a callback (e.g. the OS clamped the value).
+     */
+    private static final long EXPECTATION_TIMEOUT_MS = 800;
+    private final VolumeExpectations expectations = new VolumeExpectations();
+    private int generation = 0;
+    // Latest generation whose expectations were dropped
+    private int expiredGeneration = 0;
+    // Mask of the streams written by the current generation (see VolumeSnapshot.bit())
+    private int writtenTypes = 0;
+
+    // Latest known index of every stream, and a scratch snapshot reused by each read pass
+    private final VolumeSnapshot lastSnapshot = new VolumeSnapshot();
+    private final VolumeSnapshot readSnapshot = new VolumeSnapshot();
+
+    // Percentage of each stream in lastSnapshot, computed once per event for every subscriber
+    private final int[] lastVolumes = new int[Utils.TYPE_COUNT];
+    // Set when JS asked for the current state, so the next event is sent even if nothing changed
+    private boolean publishRequested = false;
+
+    /* Output routes: when the route changes, the OS applies the volumes it keeps for the new device.
+     * Its stream callbacks can be delivered before or after the device callback calling
+     * onRouteChanged(). Stream changes check the route first, so a switch is handled from the last
+     * state seen on the previous route instead of being synced as a user change. Changes arriving
+     * within ROUTE_SETTLE_MS after a route change are adopted and reported without being synced.
+     */
+    private static final long ROUTE_SETTLE_MS = 500;
+    // Levels to restore per output route, null unless the listener remembers device volumes
+    @Nullable
+    private final DeviceVolumeMemory deviceVolumes;
+    private final RouteReader routeReader;
+    // Active output route (see DeviceVolumeMemory.ROUTE_*)
+    private int route = DeviceVolumeMemory.ROUTE_UNKNOWN;
+    private boolean isRouteSettling = false;
+    private final Runnable routeSettledRunnable = () -> isRouteSettling = false;
+
+    public VolumeSyncEngine(
+        Scheduler scheduler,
+        AudioBackend audioBackend,
+        StreamCapabilities capabilities,
+        RouteReader routeReader,
+        VolumeListenerOptions options,
+        PluginDiagnostics diagnostics,
+        VolumeTraceRecorder trace
+    ) {
+        this.scheduler = scheduler;
+        this.diagnostics = diagnostics;
+        this.trace = trace;
+        this.audioBackend = audioBackend;
+        this.capabilities = capabilities;
+        this.routeReader = routeReader;
+        this.options = options;
+        this.syncPolicy = options.syncPolicy;
+        this.ownerThread = Thread.currentThread();
+        this.deviceVolumes = options.rememberDeviceVolumes ? new DeviceVolumeMemory() : null;
+
+        // Initialize with current volume
+        changeLatestVolumeState();
+        if (deviceVolumes != null) route = routeReader.readRoute();
+    }
+
+    /**
+     * Starts a programmatic change: indices recorded with {@link #expectStreamIndex(int, int)}
+     * until the next call are tagged with a new generation, which expires on its own.
+     */
+    public void beginProgrammaticChange() {
+        checkOwnerThread();
+        generation++;
+        writtenTypes = 0;
+        // Every generation posts one expiry with the same delay, so they run in generation order
+        scheduler.postDelayed(expectationExpiryRunnable, EXPECTATION_TIMEOUT_MS);
+    }
+
+    /**
+     * Records that `index` is about to be written to the stream, so its callback is not
+     * mistaken for a user change.
+     */
+    public void expectStreamIndex(int type, int index) {
+        checkOwnerThread();
+        expectations.add(type, index, generation);
+        writtenTypes |= VolumeSnapshot.bit(type);
+    }
+
+    /**
+     * Adopts `index` as the latest known state of the stream, without re-reading every stream
+     * like {@link #endProgrammaticChange()} does. Meant for writes repeated at a high rate
+     * (e.g. volume ramps), which must already be expected with {@link #expectStreamIndex(int, int)}.
+     */
+    public void adoptStreamIndex(int type, int index) {
+        checkOwnerThread();
+        lastSnapshot.set(type, index);
+    }
+
+    /**
+     * Reports the end state of programmatic writes whose indices were adopted one by one with
+     * {@link #adoptStreamIndex(int, int)} (e.g. a completed volume ramp): every subscriber gets a
+     * single event with what changed since the last event it was sent.
+     */
+    public void publishProgrammaticChange() {
+        checkOwnerThread();
+        if (state != STATE_ACTIVE) return;
+
+        notifyFront();
+    }
+
+    /**
+     * Ends a programmatic change, adopting the resulting index of every stream it wrote as the
+     * latest known state. The other streams are left for their callbacks, a user change made
+     * meanwhile would be lost otherwise.
+     */
+    public void endProgrammaticChange() {
+        checkOwnerThread();
+
+        lastSnapshot.read(audioBackend, capabilities, writtenTypes);
+        // Callbacks that re-read the written streams can only see this state from now on
+        if (!options.useBroadcastSource()) {
+            for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+                if ((writtenTypes & VolumeSnapshot.bit(type)) != 0) expectations.clear(type);
+            }
+        }
+        writtenTypes = 0;
+    }
+
+    /**
+     * @throws IllegalStateException if called from another thread than the engine's
+     */
+    private void checkOwnerThread() {
+        if (Thread.currentThread() == ownerThread) return;
+
+        throw new IllegalStateException(
+            "VolumeSyncEngine used from thread " + Thread.currentThread().getName() + ", it is confined to " + ownerThread.getName()
+        );
+    }
+
+    /**
+     * @return false if called from another thread than the engine's, in which case the call is
+     * logged and must be dropped, since the engine state is not synchronized
+     */
+    private boolean isOnOwnerThread() {
+        if (Thread.currentThread() == ownerThread) return true;
+
+        Timber.e(
+            new IllegalStateException("VolumeSyncEngine called off its thread"),
+            "VolumeSyncEngine used from thread %s, it is confined to %s: call dropped",
+            Thread.currentThread().getName(),
+            ownerThread.getName()
+        );
+        return false;
+    }
+
+    /**
+     * @return false if a change callback arrived after its event source was unregistered
+     */
+    private boolean acceptsCallback() {
+        if (!isOnOwnerThread()) return false;
+
+        diagnostics.increment(PluginDiagnostics.COUNTER_VOLUME_CALLBACKS);
+        if (state == STATE_ACTIVE) return true;
+
+        diagnostics.increment(PluginDiagnostics.COUNTER_STALE_CALLBACKS);
+        return false;
+    }
+
+    /**
+     * @return true if `index` is a value the plugin wrote to the stream and has not seen echoed
+     * back yet, in which case the expectation is consumed
+     */
+    private boolean consumeExpectedIndex(int type, int index) {
+        if (!expectations.consume(type, index)) return false;
+
+        diagnostics.increment(PluginDiagnostics.COUNTER_ECHOES_IGNORED);
+        return true;
+    }
+
+    private void expireOldestGeneration() {
+        expectations.expire(++expiredGeneration);
+    }
+
+    /**
+     * Called once a read pass adopted the current index of every stream.
+     */
+    private void onStreamStateRead() {
+        if (!options.useBroadcastSource()) expectations.clear();
+    }
+
+    /**
+     * Entry point for event sources that only know that some volume changed
+     * (e.g. {@link VolumeContentObserver}), every stream is read once and diffed against
+     * the last known state to find which ones changed.
+     */
+    public void onVolumeSettingsChanged() {
+        if (!acceptsCallback()) return;
+
+        if (detectVolumeChanges() == CHANGES_NONE) diagnostics.increment(PluginDiagnostics.COUNTER_UNCHANGED_CALLBACKS);
+    }
+
+    /**
+     * Entry point for event sources that already know which stream changed
+     * (e.g. {@link VolumeChangedReceiver}), which avoids re-reading every stream.
+     *
+     * @param type  plugin stream type (see Utils.TYPE_*)
+     * @param index new raw index of the stream
+     */
+    public void onStreamVolumeChanged(int type, int index) {
+        if (!acceptsCallback()) return;
+
+        if (capabilities.get(audioBackend, type) == null) return;
+
+        if (index == lastSnapshot.get(type)) {
+            consumeExpectedIndex(type, index);
+            diagnostics.increment(PluginDiagnostics.COUNTER_UNCHANGED_CALLBACKS);
+            return;
+        }
+
+        // Broadcasts can be delivered after the plugin wrote and adopted a newer index (e.g. the
+        // next ramp step), so an echo is not adopted as the latest state
+        if (consumeExpectedIndex(type, index)) return;
+
+        // Nor is a user change, the stream may have been written since: it is handled from the
+        // current index, which is already known if the change was superseded
+        readSnapshot.read(audioBackend, capabilities, VolumeSnapshot.bit(type));
+        if (readSnapshot.get(type) != VolumeSnapshot.UNKNOWN_INDEX) index = readSnapshot.get(type);
+        if (index == lastSnapshot.get(type)) {
+            diagnostics.increment(PluginDiagnostics.COUNTER_UNCHANGED_CALLBACKS);
+            return;
+        }
+
+        if (onRouteSwitchDetected()) return;
+
+        recordUserChange(type, index);
+        onUserChange(type, isRouteSettling ? NO_SYNC_VOLUME : toSyncReferenceVolume(type, index));
+    }
+
+    /**
+     * Reads every stream once, adopts all the changes and handles them as a single user change,
+     * synced from the first linked stream in DETECTION_ORDER.
+     *
+     * @return one of the CHANGES_* constants
+     */
+    private int detectVolumeChanges() {
+        readSnapshot.read(audioBackend, capabilities);
+        int changedTypes = readSnapshot.diff(lastSnapshot);
+        if (changedTypes == 0) {
+            onStreamStateRead();
+            return CHANGES_NONE;
+        }
+        if (onRouteSwitchDetected()) return CHANGES_ROUTE;
+
+        boolean isUserChange = false;
+        int sourceType = Utils.TYPE_UNKNOWN;
+        int referenceVolume = NO_SYNC_VOLUME;
+
+        for (int type : DETECTION_ORDER) {
+            if ((changedTypes & VolumeSnapshot.bit(type)) == 0) continue;
+
+            int index = readSnapshot.get(type);
+            if (!recordStreamIndex(type, index)) continue;
+
+            isUserChange = true;
+            if (referenceVolume == NO_SYNC_VOLUME) {
+                sourceType = type;
+                referenceVolume = toSyncReferenceVolume(type, index);
+            }
+        }
+        onStreamStateRead();
+
+        if (!isUserChange) return CHANGES_ECHO_ONLY;
+
+        onUserChange(sourceType, isRouteSettling ? NO_SYNC_VOLUME : referenceVolume);
+        return CHANGES_USER;
+    }
+
+    /**
+     * Adopts the new index of a stream whose index differs from the last known state.
+     *
+     * @return true if it is a user change, false if it is the echo of a plugin write
+     */
+    private boolean recordStreamIndex(int type, int index) {
+        if (consumeExpectedIndex(type, index)) {
+            lastSnapshot.set(type, index);
+            return false;
+        }
+
+        recordUserChange(type, index);
+        return true;
+    }
+
+    /**
+     * Adopts the index a user change set the stream to.
+     */
+    private void recordUserChange(int type, int index) {
+        int source = isRouteSettling ? VolumeTraceRecorder.SOURCE_ROUTE : VolumeTraceRecorder.SOURCE_USER;
+        trace.record(type, lastSnapshot.get(type), index, source);
+        lastSnapshot.set(type, index);
+        // The stream left the values the plugin wrote, their echoes are superseded
+        expectations.clear(type);
+    }
+
+    /**
+     * Called before handling a stream change that is not an echo. If the OS switched to another
+     * output route whose device callback was not delivered yet, the change is the OS applying the
+     * new route's volumes: the route is changed right away instead, which remembers the levels of
+     * the previous route from the state adopted before the switch. Costs one IPC per change.
+     *
+     * @return true if the route changed, in which case the change was handled
+     */
+    private boolean onRouteSwitchDetected() {
+        if (deviceVolumes == null || route == DeviceVolumeMemory.ROUTE_UNKNOWN) return false;
+
+        int currentRoute = routeReader.readRoute();
+        if (currentRoute == route || currentRoute == DeviceVolumeMemory.ROUTE_UNKNOWN) return false;
+
+        // Some devices report different stream ranges per output device
+        capabilities.refresh(audioBackend);
+        onRouteChanged(currentRoute);
+        return true;
+    }
+
+    /**
+     * @return the reference volume to sync the linked streams to after a user change,
+     * or NO_SYNC_VOLUME if the stream is not linked
+     */
+    private int toSyncReferenceVolume(int type, int index) {
+        StreamCapabilities.Entry entry = capabilities.get(audioBackend, type);
+        if (entry == null || !syncPolicy.isLinked(type)) return NO_SYNC_VOLUME;
+
+        return syncPolicy.toReferenceVolume(type, entry, index);
+    }
+
+    /**
+     * @param sourceType   stream the user changed
+     * @param targetVolume reference volume to sync the linked streams to, or NO_SYNC_VOLUME to only
+     *                     notify the listener
+     */
+    private void onUserChange(int sourceType, int targetVolume) {
+        if (subscriptions.isEmpty()) return;
+
+        if (options.coalesceMs > 0) {
+            // Keep only the latest value, it will be applied when the window closes
+            if (!hasPendingChange) {
+                hasPendingChange = true;
+                scheduler.postDelayed(coalesceFlushRunnable, options.coalesceMs);
+            } else {
+                diagnostics.increment(PluginDiagnostics.COUNTER_COALESCED_CALLBACKS);
+            }
+            if (targetVolume != NO_SYNC_VOLUME) {
+                pendingSourceType = sourceType;
+                pendingVolume = targetVolume;
+            }
+            return;
+        }
+
+        applyVolumeChange(sourceType, targetVolume);
+    }
+
+    private void flushPendingChange() {
+        boolean hadPendingChange = hasPendingChange;
+        int sourceType = pendingSourceType;
+        int volume = pendingVolume;
+        hasPendingChange = false;
+        pendingSourceType = Utils.TYPE_UNKNOWN;
+        pendingVolume = NO_SYNC_VOLUME;
+        if (!hadPendingChange || subscriptions.isEmpty()) return;
+
+        applyVolumeChange(sourceType, volume);
+    }
+
+    private void applyVolumeChange(int sourceType, int targetVolume) {
+        // If an error happens, cancel emitting values to FE.
+        if (targetVolume != NO_SYNC_VOLUME && !syncAllVolumes(sourceType, targetVolume)) {
+            diagnostics.increment(PluginDiagnostics.COUNTER_FAILED_SYNCS);
+            return;
+        }
+
+        notifyFront();
+    }
+
+    private void notifyFront() {
+        notifyFront(DeviceVolumeMemory.ROUTE_UNKNOWN);
+    }
+
+    /**
+     * @param newRoute route to report in the event when it changed, or ROUTE_UNKNOWN
+     */
+    private void notifyFront(int newRoute) {
+        boolean requested = publishRequested;
+        publishRequested = false;
+        if (subscriptions.isEmpty()) return;
+
+        updateLastVolumes();
+
+        for (int i = 0; i < subscriptions.size(); i++) {
+            if (subscriptions.get(i).publish(lastSnapshot, lastVolumes, requested, newRoute)) {
+                diagnostics.increment(PluginDiagnostics.COUNTER_EVENTS_SENT);
+            }
+        }
+    }
+
+    private void changeLatestVolumeState() {
+        lastSnapshot.read(audioBackend, capabilities);
+        onStreamStateRead();
+    }
+
+    /**
+     * @return the volume percentage of `index` on the given stream, or -1 if it is unknown
+     */
+    private int toPercentage(int type, int index) {
+        if (index == VolumeSnapshot.UNKNOWN_INDEX) return -1;
+
+        StreamCapabilities.Entry entry = capabilities.get(audioBackend, type);
+        return entry != null ? entry.toPercentage(index) : -1;
+    }
+
+    /**
+     * Writes the index the sync policy derives from `referenceVolume` to every linked stream
+     * that is not already at it. Linked streams the device does not support are skipped.
+     * <p>
+     * Everything is computed on raw indices, and the source stream keeps the index the user chose
+     * unless it breaks its floors. Re-quantizing it through a percentage could move it by one step,
+     * which would be reported as a new change and start another sync cycle.
+     *
+     * @return false if any stream failed to update
+     */
+    private boolean syncAllVolumes(int sourceType, int referenceVolume) {
+        beginProgrammaticChange();
+
+        try {
+            for (int type : syncPolicy.getLinkedTypes()) {
+                StreamCapabilities.Entry entry = capabilities.get(audioBackend, type);
+                if (entry == null) {
+                    // A policy may link a stream this device does not have, the others are still synced
+                    Timber.w("skipping linked stream %d, its capabilities are unavailable", type);
+                    continue;
+                }
+
+                int index = type == sourceType
+                    ? syncPolicy.clampIndex(type, entry, lastSnapshot.get(type))
+                    : syncPolicy.toSyncIndex(type, entry, referenceVolume);
+                syncVolume(type, index);
+            }
+
+            return true;
+        } catch (Exception e) {
+            Timber.e(e, "Error syncing volumes: %s", e.getMessage());
+            return false;
+        } finally {
+            // Update with latest values
+            endProgrammaticChange();
+        }
+    }
+
+    private void syncVolume(int type, int index) {
+        if (index == lastSnapshot.get(type)) return;
+
+        trace.record(type, lastSnapshot.get(type), index, VolumeTraceRecorder.SOURCE_SYNC);
+        expectStreamIndex(type, index);
+        setStreamIndex(audioBackend, type, index);
+    }
+
+    /**
+     * Called when the output route changes, once the stream capabilities were refreshed for it.
+     * The levels last seen on the new route are restored in a single pass that only writes the
+     * streams that differ, then every subscriber gets a single event carrying the route.
+     * Does nothing unless the listener remembers device volumes.
+     *
+     * @param newRoute one of the DeviceVolumeMemory.ROUTE_* constants
+     */
+    public void onRouteChanged(int newRoute) {
+        if (!isOnOwnerThread()) return;
+        if (deviceVolumes == null || state == STATE_RELEASED || newRoute == route) return;
+
+        int previousRoute = route;
+        route = newRoute;
+        // First route seen, there is nothing to restore yet
+        if (previousRoute == DeviceVolumeMemory.ROUTE_UNKNOWN || newRoute == DeviceVolumeMemory.ROUTE_UNKNOWN) return;
+
+        // The OS may still be applying the volumes of the new route
+        isRouteSettling = true;
+        scheduler.cancel(routeSettledRunnable);
+        scheduler.postDelayed(routeSettledRunnable, ROUTE_SETTLE_MS);
+
+        // A pending sync was computed for the previous route, the restored levels supersede it
+        scheduler.cancel(coalesceFlushRunnable);
+        hasPendingChange = false;
+        pendingSourceType = Utils.TYPE_UNKNOWN;
+        pendingVolume = NO_SYNC_VOLUME;
+
+        deviceVolumes.remember(previousRoute, lastSnapshot);
+        readSnapshot.read(audioBackend, capabilities);
+
+        VolumeSnapshot preferred = deviceVolumes.get(newRoute);
+        boolean isProgrammaticChange = false;
+        try {
+            for (int type = 0; preferred != null && type < Utils.TYPE_COUNT; type++) {
+                StreamCapabilities.Entry entry = capabilities.get(audioBackend, type);
+                int currentIndex = readSnapshot.get(type);
+                int index = preferred.get(type);
+                if (entry == null || currentIndex == VolumeSnapshot.UNKNOWN_INDEX || index == VolumeSnapshot.UNKNOWN_INDEX) continue;
+
+                index = Math.max(entry.minIndex, Math.min(index, entry.maxIndex));
+                if (index == currentIndex) continue;
+
+                if (!isProgrammaticChange) {
+                    beginProgrammaticChange();
+                    isProgrammaticChange = true;
+                }
+                trace.record(type, currentIndex, index, VolumeTraceRecorder.SOURCE_ROUTE);
+                expectStreamIndex(type, index);
+                setStreamIndex(audioBackend, type, index);
+            }
+        } catch (Exception e) {
+            Timber.e(e, "Error restoring volumes for route %s: %s", DeviceVolumeMemory.getRouteName(newRoute), e.getMessage());
+        } finally {
+            // The levels the OS applied for the new route, then the ones restored over them
+            lastSnapshot.copyFrom(readSnapshot);
+            onStreamStateRead();
+            if (isProgrammaticChange) endProgrammaticChange();
+        }
+
+        if (state == STATE_ACTIVE) notifyFront(newRoute);
+    }
+
+    /**
+     * Applies any change still waiting for its coalescing window, before the event source is
+     * suspended (e.g. while the app is in the background).
+     */
+    public void pause() {
+        if (!isOnOwnerThread()) return;
+        if (state != STATE_ACTIVE) return;
+
+        if (hasPendingChange) {
+            scheduler.cancel(coalesceFlushRunnable);
+            flushPendingChange();
+        }
+        state = STATE_PAUSED;
+    }
+
+    /**
+     * Catches up with the changes made while the event source was suspended: the streams are
+     * read once, synced if the user changed any, and every subscriber gets a single event with
+     * what changed since the last event it was sent.
+     */
+    public void resume() {
+        if (!isOnOwnerThread()) return;
+        if (state != STATE_PAUSED) return;
+
+        state = STATE_ACTIVE;
+        // User and route changes are notified as usual, otherwise send whatever JS has not seen yet
+        int changes = detectVolumeChanges();
+        if (changes != CHANGES_USER && changes != CHANGES_ROUTE) notifyFront();
+    }
+
+    private void updateLastVolumes() {
+        for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+            lastVolumes[type] = toPercentage(type, lastSnapshot.get(type));
+        }
+    }
+
+    /**
+     * Called when JS has handled the last event of an ack flow controlled subscriber, sends it
+     * the latest state if it changed meanwhile.
+     *
+     * @return false if there is no subscriber with this ID
+     */
+    public boolean acknowledgeEvent(String subscriptionId) {
+        if (!isOnOwnerThread()) return false;
+
+        for (int i = 0; i < subscriptions.size(); i++) {
+            VolumeSubscription subscription = subscriptions.get(i);
+            if (!subscription.getId().equals(subscriptionId)) continue;
+
+            if (!subscription.hasHeldState()) {
+                subscription.acknowledge(lastSnapshot, lastVolumes);
+                return true;
+            }
+
+            updateLastVolumes();
+            if (subscription.acknowledge(lastSnapshot, lastVolumes)) {
+                diagnostics.increment(PluginDiagnostics.COUNTER_EVENTS_SENT);
+                diagnostics.increment(PluginDiagnostics.COUNTER_HELD_EVENTS_SENT);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a subscriber, replacing the one with the same ID if any.
+     */
+    public void addSubscription(VolumeSubscription subscription) {
+        if (!isOnOwnerThread()) return;
+        removeSubscription(subscription.getId());
+        subscriptions.add(subscription);
+    }
+
+    /**
+     * @return false if no subscriber is left, in which case the engine can be cleaned up
+     */
+    public boolean removeSubscription(String id) {
+        // Keep the engine, the subscriber was not removed
+        if (!isOnOwnerThread()) return true;
+
+        for (int i = 0; i < subscriptions.size(); i++) {
+            if (subscriptions.get(i).getId().equals(id)) {
+                subscriptions.remove(i).end();
+                break;
+            }
+        }
+        return !subscriptions.isEmpty();
+    }
+
+    public void cleanup() {
+        if (!isOnOwnerThread()) return;
+        state = STATE_RELEASED;
+        scheduler.cancel(expectationExpiryRunnable);
+        scheduler.cancel(coalesceFlushRunnable);
+        scheduler.cancel(routeSettledRunnable);
+        isRouteSettling = false;
+        hasPendingChange = false;
+        pendingSourceType = Utils.TYPE_UNKNOWN;
+        pendingVolume = NO_SYNC_VOLUME;
+        for (int i = 0; i < subscriptions.size(); i++) subscriptions.get(i).end();
+        subscriptions.clear();
+    }
+
+    /**
+     * @param fullResync when using delta payloads, makes the next event carry every stream
+     */
+    public void requestVolumeChangeToListener(boolean fullResync) {
+        if (!isOnOwnerThread()) return;
+        if (fullResync) {
+            for (int i = 0; i < subscriptions.size(); i++) subscriptions.get(i).requestFullResync();
+        }
+        publishRequested = true;
+
+        // Sync to the music volume to trigger the listener, or only notify it if music is not linked
+        int index = lastSnapshot.get(TYPE_MUSIC);
+        if (index == VolumeSnapshot.UNKNOWN_INDEX) return;
+        onUserChange(TYPE_MUSIC, toSyncReferenceVolume(TYPE_MUSIC, index));
+
+        Timber.d("Requested volume sync with TYPE_MUSIC");
+    }
+}
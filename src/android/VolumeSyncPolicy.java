@@ -0,0 +1,207 @@
+package com.hrs.audiomanagement;
+
+import static com.hrs.audiomanagement.Utils.TYPE_MUSIC;
+import static com.hrs.audiomanagement.Utils.TYPE_NOTIFICATION;
+import static com.hrs.audiomanagement.Utils.TYPE_RING;
+import static com.hrs.audiomanagement.Utils.TYPE_SYSTEM;
+import static com.hrs.audiomanagement.Utils.TYPE_VOICE_CALL;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import timber.log.Timber;
+
+/**
+ * Decides how the listener propagates a user change on one stream to the other streams.
+ * <p>
+ * A change on a linked stream is turned into a reference volume (0-100), from which the target
+ * of every linked stream is derived as `clamp(reference * ratio + offset, min, max)`. The source
+ * stream's own ratio and offset are applied in reverse, so a stream linked at half volume can
+ * drive the others as well as follow them.
+ * <p>
+ * Both conversions go through lookup tables built from the stream capabilities, which are rebuilt
+ * when the capabilities change (e.g. on audio route changes). Must only be used from the plugin's
+ * audio thread.
+ */
+class VolumeSyncPolicy {
+    private static final int MAX_PERCENTAGE = 100;
+    // Keeps the ringer audible, so syncing never puts the device into Do Not Disturb mode
+    private static final int DEFAULT_RING_MIN_VOLUME = 10;
+    // Streams linked when the JS layer does not provide a list, in the order they are written
+    private static final int[] DEFAULT_LINKED_TYPES = {TYPE_RING, TYPE_NOTIFICATION, TYPE_SYSTEM, TYPE_MUSIC, TYPE_VOICE_CALL};
+
+    private static final String KEY_LINKED = "linked";
+    private static final String KEY_EXCLUDED = "excluded";
+    private static final String KEY_STREAMS = "streams";
+    private static final String KEY_RATIO = "ratio";
+    private static final String KEY_OFFSET = "offset";
+    private static final String KEY_MIN = "min";
+    private static final String KEY_MAX = "max";
+
+    private final int[] linkedTypes;
+    // Per-stream rule, indexed by plugin stream type (see Utils.TYPE_*)
+    private final double[] ratios = new double[Utils.TYPE_COUNT];
+    private final int[] offsets = new int[Utils.TYPE_COUNT];
+    private final int[] minVolumes = new int[Utils.TYPE_COUNT];
+    private final int[] maxVolumes = new int[Utils.TYPE_COUNT];
+
+    // Lookup tables, and the capabilities they were built from
+    private final StreamCapabilities.Entry[] tableEntries = new StreamCapabilities.Entry[Utils.TYPE_COUNT];
+    // Index into this table with a stream index to get the reference volume
+    private final int[][] indexToReference = new int[Utils.TYPE_COUNT][];
+    // Index into this table with a reference volume to get the stream index to sync to
+    private final int[][] referenceToIndex = new int[Utils.TYPE_COUNT][];
+    // Stream index range allowed by the min / max floors
+    private final int[] minIndices = new int[Utils.TYPE_COUNT];
+    private final int[] maxIndices = new int[Utils.TYPE_COUNT];
+
+    private VolumeSyncPolicy(int[] linkedTypes) {
+        this.linkedTypes = linkedTypes;
+        for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+            ratios[type] = 1;
+            maxVolumes[type] = MAX_PERCENTAGE;
+        }
+        minVolumes[TYPE_RING] = DEFAULT_RING_MIN_VOLUME;
+    }
+
+    /**
+     * @return the linked streams, in the order they should be written
+     */
+    public int[] getLinkedTypes() {
+        return linkedTypes;
+    }
+
+    public boolean isLinked(int type) {
+        return contains(linkedTypes, type);
+    }
+
+    /**
+     * @return the reference volume (0-100) a change of `type` to `index` stands for
+     */
+    public int toReferenceVolume(int type, StreamCapabilities.Entry entry, int index) {
+        ensureTables(type, entry);
+        int[] table = indexToReference[type];
+        return table[Math.max(0, Math.min(index, table.length - 1))];
+    }
+
+    /**
+     * @return the index `type` should be synced to for the given reference volume
+     */
+    public int toSyncIndex(int type, StreamCapabilities.Entry entry, int referenceVolume) {
+        ensureTables(type, entry);
+        return referenceToIndex[type][Math.max(0, Math.min(referenceVolume, MAX_PERCENTAGE))];
+    }
+
+    /**
+     * @return `index` if it is within the floors of `type`, otherwise the closest index that is
+     */
+    public int clampIndex(int type, StreamCapabilities.Entry entry, int index) {
+        ensureTables(type, entry);
+        return Math.max(minIndices[type], Math.min(index, maxIndices[type]));
+    }
+
+    private void ensureTables(int type, StreamCapabilities.Entry entry) {
+        if (tableEntries[type] == entry) return;
+
+        double ratio = ratios[type];
+        int[] toReference = new int[Math.max(entry.maxIndex, 0) + 1];
+        for (int index = 0; index < toReference.length; index++) {
+            double volume = entry.maxIndex > 0 ? (double) index / entry.maxIndex * MAX_PERCENTAGE : 0;
+            int reference = (int) Math.round((volume - offsets[type]) / ratio);
+            toReference[index] = Math.max(0, Math.min(reference, MAX_PERCENTAGE));
+        }
+
+        int[] toIndex = new int[MAX_PERCENTAGE + 1];
+        for (int reference = 0; reference <= MAX_PERCENTAGE; reference++) {
+            int volume = (int) Math.round(reference * ratio) + offsets[type];
+            toIndex[reference] = entry.toIndex(Math.max(minVolumes[type], Math.min(volume, maxVolumes[type])));
+        }
+
+        indexToReference[type] = toReference;
+        referenceToIndex[type] = toIndex;
+        minIndices[type] = entry.toIndex(minVolumes[type]);
+        maxIndices[type] = entry.toIndex(maxVolumes[type]);
+        tableEntries[type] = entry;
+    }
+
+    public static VolumeSyncPolicy defaultPolicy() {
+        return new VolumeSyncPolicy(DEFAULT_LINKED_TYPES);
+    }
+
+    /**
+     * Expected shape, every field being optional:
+     * `{linked: ["music", ...], excluded: ["voice", ...], streams: {ring: {ratio, offset, min, max}, ...}}`.
+     * Unknown stream names and invalid values are ignored.
+     */
+    public static VolumeSyncPolicy fromJson(@Nullable JSONObject json) {
+        if (json == null) return defaultPolicy();
+
+        int linkedMask = 0;
+        JSONArray linked = json.optJSONArray(KEY_LINKED);
+        if (linked == null) {
+            for (int type : DEFAULT_LINKED_TYPES) linkedMask |= 1 << type;
+        } else {
+            linkedMask = parseTypeMask(linked);
+        }
+
+        JSONArray excluded = json.optJSONArray(KEY_EXCLUDED);
+        if (excluded != null) linkedMask &= ~parseTypeMask(excluded);
+
+        // Keep the historical write order, then any additional stream
+        int[] linkedTypes = new int[Integer.bitCount(linkedMask)];
+        int count = 0;
+        for (int type : DEFAULT_LINKED_TYPES) {
+            if ((linkedMask & (1 << type)) != 0) linkedTypes[count++] = type;
+        }
+        for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+            if ((linkedMask & (1 << type)) != 0 && !contains(DEFAULT_LINKED_TYPES, type)) linkedTypes[count++] = type;
+        }
+
+        VolumeSyncPolicy policy = new VolumeSyncPolicy(linkedTypes);
+
+        JSONObject streams = json.optJSONObject(KEY_STREAMS);
+        if (streams != null) {
+            for (int type = 0; type < Utils.TYPE_COUNT; type++) {
+                JSONObject rule = streams.optJSONObject(Utils.convertStreamTypeToKey(type));
+                if (rule != null) policy.applyRule(type, rule);
+            }
+        }
+
+        return policy;
+    }
+
+    private void applyRule(int type, JSONObject rule) {
+        double ratio = rule.optDouble(KEY_RATIO, 1);
+        if (ratio > 0) {
+            ratios[type] = ratio;
+        } else {
+            Timber.w("ignoring invalid sync ratio %s for stream %d", ratio, type);
+        }
+
+        offsets[type] = rule.optInt(KEY_OFFSET, 0);
+        minVolumes[type] = Math.max(0, Math.min(rule.optInt(KEY_MIN, minVolumes[type]), MAX_PERCENTAGE));
+        maxVolumes[type] = Math.max(minVolumes[type], Math.min(rule.optInt(KEY_MAX, MAX_PERCENTAGE), MAX_PERCENTAGE));
+    }
+
+    private static int parseTypeMask(JSONArray keys) {
+        int mask = 0;
+        for (int i = 0; i < keys.length(); i++) {
+            int type = Utils.convertStreamTypeFromKey(keys.optString(i, null));
+            if (type == Utils.TYPE_UNKNOWN) {
+                Timber.w("ignoring unknown stream in sync policy: %s", keys.optString(i, null));
+                continue;
+            }
+            mask |= 1 << type;
+        }
+        return mask;
+    }
+
+    private static boolean contains(int[] types, int type) {
+        for (int t : types) {
+            if (t == type) return true;
+        }
+        return false;
+    }
+}
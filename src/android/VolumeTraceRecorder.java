@@ -0,0 +1,97 @@
+package com.hrs.audiomanagement;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Fixed-capacity ring buffer of the most recent volume changes, stored as primitives so that
+ * recording never allocates. Older records are overwritten once the buffer is full.
+ * <p>
+ * Must only be used from the plugin's audio thread.
+ */
+class VolumeTraceRecorder {
+    // A change made with the hardware keys or the system UI
+    public static final int SOURCE_USER = 0;
+    // A change requested by JS (setVolume, setVolumeBatch, ...)
+    public static final int SOURCE_PROGRAMMATIC = 1;
+    // A change made by the listener to keep streams in sync
+    public static final int SOURCE_SYNC = 2;
+    // A step of a volume ramp started by JS
+    public static final int SOURCE_RAMP = 3;
+    // A level restored by the listener when the output route changed
+    public static final int SOURCE_ROUTE = 4;
+
+    // Used when the previous index of a stream is not known
+    public static final int UNKNOWN_INDEX = -1;
+
+    private static final String[] SOURCE_NAMES = {"user", "programmatic", "sync", "ramp", "route"};
+
+    private static final String KEY_CAPACITY = "capacity";
+    private static final String KEY_EVENTS = "events";
+    private static final String KEY_TIMESTAMP = "timestamp";
+    private static final String KEY_STREAM_TYPE = "streamType";
+    private static final String KEY_OLD_INDEX = "oldIndex";
+    private static final String KEY_NEW_INDEX = "newIndex";
+    private static final String KEY_SOURCE = "source";
+
+    private final long[] timestamps;
+    private final int[] streamTypes;
+    private final int[] oldIndices;
+    private final int[] newIndices;
+    private final int[] sources;
+
+    // Slot the next record is written to
+    private int head = 0;
+    private int size = 0;
+
+    public VolumeTraceRecorder(int capacity) {
+        this.timestamps = new long[capacity];
+        this.streamTypes = new int[capacity];
+        this.oldIndices = new int[capacity];
+        this.newIndices = new int[capacity];
+        this.sources = new int[capacity];
+    }
+
+    /**
+     * @param type plugin stream type (see Utils.TYPE_*)
+     */
+    public void record(int type, int oldIndex, int newIndex, int source) {
+        timestamps[head] = System.currentTimeMillis();
+        streamTypes[head] = type;
+        oldIndices[head] = oldIndex;
+        newIndices[head] = newIndex;
+        sources[head] = source;
+
+        head = (head + 1) % timestamps.length;
+        if (size < timestamps.length) size++;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * @return the recorded changes, oldest first
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONArray events = new JSONArray();
+        int capacity = timestamps.length;
+        int start = (head - size + capacity) % capacity;
+
+        for (int i = 0; i < size; i++) {
+            int slot = (start + i) % capacity;
+            events.put(new JSONObject()
+                .put(KEY_TIMESTAMP, timestamps[slot])
+                .put(KEY_STREAM_TYPE, streamTypes[slot])
+                .put(KEY_OLD_INDEX, oldIndices[slot])
+                .put(KEY_NEW_INDEX, newIndices[slot])
+                .put(KEY_SOURCE, SOURCE_NAMES[sources[slot]]));
+        }
+
+        return new JSONObject()
+            .put(KEY_CAPACITY, capacity)
+            .put(KEY_EVENTS, events);
+    }
+}
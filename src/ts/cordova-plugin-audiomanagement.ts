@@ -52,7 +52,10 @@ export const enum VolumeType {
 	MUSIC = 1,
 	NOTIFICATION = 2,
 	SYSTEM = 3,
-	VOICE_CALL = 4
+	VOICE_CALL = 4,
+	ALARM = 5,
+	DTMF = 6,
+	ACCESSIBILITY = 7
 }
 
 export interface AudioModeResult {
@@ -90,13 +93,185 @@ export interface BatchStreamSetConfig {
 	streams: StreamSetConfig[];
 }
 
-export interface StreamSetResult {
+/** `volume` and `scaledVolume` are where a stream was left after a failed write, when it could still be read. */
+export interface StreamSetResult extends Partial<VolumeResult> {
 	streamType?: number;
 	errorMessage: string;
 }
 
+/** Where a stream was left, `volume` is its raw index and `scaledVolume` its percentage. */
+export interface StreamSetState extends VolumeResult {
+	streamType: number;
+}
+
+export interface AudioStreamState extends StreamSetState {
+	/** Highest raw index of the stream. */
+	maxVolume: number;
+}
+
+export interface AudioStateResult extends AudioModeResult, NotificationPolicyAccessState {
+	/** Every stream supported by the device. */
+	streams: AudioStreamState[];
+}
+
+export const enum VolumeRampCurve {
+	LINEAR = 'linear',
+	EASE_IN = 'easeIn',
+	EASE_OUT = 'easeOut',
+	EASE_IN_OUT = 'easeInOut'
+}
+
+export interface VolumeRampConfig {
+	streamTypes: VolumeType[];
+	/** Target of every stream, see `scaled`. */
+	volume: number;
+	scaled?: boolean; // defaults to true if not provided
+	durationMs: number;
+	curve?: VolumeRampCurve; // defaults to linear if not provided
+}
+
+export interface VolumeRampResult {
+	/** False when a stream was cancelled or taken over by another ramp before reaching the target. */
+	completed: boolean;
+	/** Where the ramp left each stream. */
+	streams: StreamSetState[];
+}
+
 export interface BatchStreamSetResult {
+	/** Streams that failed to update. */
 	errors: StreamSetResult[];
+	/** Streams that were written. Duplicate entries for a stream collapse to the last one. */
+	applied?: StreamSetState[];
+	/** Streams that were already at the target index, and were left untouched. */
+	skipped?: StreamSetState[];
+}
+
+export interface VolumeProfile {
+	/** Left untouched when not provided. */
+	audioMode?: AudioMode;
+	/** Streams not listed are left untouched. Duplicate entries for a stream collapse to the last one. */
+	streams: StreamSetConfig[];
+}
+
+export interface NamedVolumeProfile extends VolumeProfile {
+	name: string;
+}
+
+export interface VolumeProfileListResult {
+	/** Sorted by name. */
+	profiles: NamedVolumeProfile[];
+}
+
+export type TransactionCommand =
+	| {action: 'setAudioMode'; audioMode: AudioMode}
+	| ({action: 'setVolume'} & StreamSetConfig)
+	| ({action: 'setVolumeBatch'} & BatchStreamSetConfig)
+	| {action: 'getAudioMode'}
+	| {action: 'getVolume'; streamType: VolumeType}
+	| {action: 'getMaxVolume'; streamType: VolumeType}
+	| {action: 'getAudioState'};
+
+export interface TransactionCommandResult {
+	success: boolean;
+	/** Same result as the standalone action, absent for writes. */
+	result?: AudioModeResult | VolumeResult | MaxVolumeResult | BatchStreamSetResult | AudioStateResult;
+	/** Set when `success` is false. */
+	errorMessage?: string;
+}
+
+export interface TransactionResult {
+	/** One entry per command, in the same order. */
+	results: TransactionCommandResult[];
+}
+
+export const enum VolumeListenerSource {
+	/** Observes every Settings.System write and re-reads all streams (default). */
+	SETTINGS = 'settings',
+	/** Uses the VOLUME_CHANGED_ACTION broadcast, falls back to SETTINGS if unavailable. */
+	BROADCAST = 'broadcast'
+}
+
+export const enum VolumeListenerPayload {
+	/** Every event carries all streams (default). */
+	FULL = 'full',
+	/** Events carry only the streams that changed, see `VolumeListenerDeltaResult`. */
+	DELTA = 'delta'
+}
+
+export const enum VolumeListenerEncoding {
+	/** Events are sent as JSON objects (default). */
+	JSON = 'json',
+	/** Events are sent as a packed ArrayBuffer and decoded by this wrapper, which is cheaper on both sides. */
+	BINARY = 'binary'
+}
+
+export const enum VolumeListenerFlowControl {
+	/** Events are sent as soon as something changes (default). */
+	NONE = 'none',
+	/**
+	 * After each event, the plugin waits for this wrapper to acknowledge it once the callback has
+	 * returned. Changes made meanwhile are not queued, only the latest state is sent on acknowledgement.
+	 */
+	ACK = 'ack'
+}
+
+/** Output route media plays on, as approximated from the connected devices. */
+export type AudioRoute = 'speaker' | 'wired' | 'usb' | 'bluetooth' | 'hearingAid';
+
+export type VolumeStreamName = 'ring' | 'notification' | 'system' | 'music' | 'voice' | 'alarm' | 'dtmf' | 'accessibility';
+
+export interface VolumeSyncRule {
+	/** Target volume is `reference * ratio + offset`, defaults to 1. */
+	ratio?: number;
+	/** Percentage added to the target volume, defaults to 0. */
+	offset?: number;
+	/** Lowest volume a sync may set, defaults to 10 for ring and 0 otherwise. */
+	min?: number;
+	/** Highest volume a sync may set, defaults to 100. */
+	max?: number;
+}
+
+export interface VolumeSyncPolicy {
+	/** Streams kept in sync with each other, defaults to ring, notification, system, music and voice. */
+	linked?: VolumeStreamName[];
+	/** Streams removed from `linked`, they are still reported but never synced. */
+	excluded?: VolumeStreamName[];
+	streams?: Partial<Record<VolumeStreamName, VolumeSyncRule>>;
+}
+
+export interface VolumeListenerOptions {
+	source?: VolumeListenerSource;
+	payload?: VolumeListenerPayload;
+	/**
+	 * When set, changes detected within this many milliseconds are collapsed
+	 * into a single sync and a single event carrying the final state.
+	 */
+	coalesceMs?: number;
+	/** How a user change on one stream is applied to the others, natively. */
+	syncPolicy?: VolumeSyncPolicy;
+	/** Wire format of listener events, callbacks receive the same result shape either way. */
+	encoding?: VolumeListenerEncoding;
+	/**
+	 * Identifies the subscriber, so several modules can listen at the same time and stop
+	 * independently. Starting again with the same ID replaces that subscriber. Defaults to 'default'.
+	 */
+	id?: string;
+	/** Streams this subscriber gets in its events, defaults to every stream. */
+	streams?: VolumeType[];
+	/**
+	 * Stop observing volume changes while the app is in the background. On resume, subscribers
+	 * get a single event with whatever changed in the meantime. Defaults to false.
+	 */
+	pauseInBackground?: boolean;
+	/** Keeps a busy WebView from receiving a backlog of stale events. */
+	flowControl?: VolumeListenerFlowControl;
+	/**
+	 * Remember the levels of every stream per output route, and restore them natively when the
+	 * route becomes active again (e.g. a headset is plugged back in). Each route change then
+	 * produces a single event carrying `route`, the volumes the OS applies for the new device are
+	 * reported without being synced. Defaults to false.
+	 */
+	rememberDeviceVolumes?: boolean;
 }
 
 export interface VolumeListenerResult {
@@ -105,6 +280,157 @@ export interface VolumeListenerResult {
     system: number;
     music: number;
     voice: number;
+    /** Only present when the device supports the stream. */
+    alarm?: number;
+    dtmf?: number;
+    accessibility?: number;
+    /** Only present on the event sent when the output route changed. */
+    route?: AudioRoute;
+}
+
+export interface VolumeListenerDeltaResult extends Partial<VolumeListenerResult> {
+	/** Increases by one for every event, so gaps can be detected. */
+	seq: number;
+	/** Epoch milliseconds at which the event was built. */
+	timestamp: number;
+	/** True when the event carries every stream rather than only the changed ones. */
+	full: boolean;
+}
+
+export interface ActionLatencyStats {
+	count: number;
+	totalMicros: number;
+	maxMicros: number;
+	/** Number of calls per latency bucket, see `DiagnosticsResult.bucketUpperBoundsMicros`. */
+	histogram: number[];
+}
+
+export interface DiagnosticsCounters {
+	/** Volume change callbacks received by the listener, from any event source. */
+	volumeCallbacks: number;
+	/** Settings.System changes dropped because they are not about volume. */
+	unrelatedSettingsChanges: number;
+	/** Callbacks ignored because they reported a value written by the plugin. */
+	echoesIgnored: number;
+	/** Callbacks ignored because no stream actually changed. */
+	unchangedCallbacks: number;
+	/** Changes merged into a pending one by the coalescing window. */
+	coalescedCallbacks: number;
+	/** Syncs that failed, and were therefore not reported to the listener. */
+	failedSyncs: number;
+	/** Calls made to the system AudioManager. */
+	audioManagerCalls: number;
+	/** Events sent to the listener. */
+	eventsSent: number;
+	/** Events sent on acknowledgement, each replacing the states held while JS was busy. */
+	heldEventsSent: number;
+	/** Callbacks dropped because the listener was paused or stopped by the time they were delivered. */
+	staleCallbacks: number;
+}
+
+export interface DiagnosticsResult {
+	/** Latency from the action reaching the plugin to its completion, keyed by action name. */
+	actions: {[action: string]: ActionLatencyStats};
+	counters: DiagnosticsCounters;
+	/**
+	 * Exclusive upper bound of each histogram bucket, in microseconds.
+	 * Histograms have one more bucket, holding everything above the last bound.
+	 */
+	bucketUpperBoundsMicros: number[];
+}
+
+export const enum VolumeTraceSource {
+	/** Hardware keys or system UI. */
+	USER = 'user',
+	/** Requested by JS through this plugin. */
+	PROGRAMMATIC = 'programmatic',
+	/** Made by the volume listener to keep streams in sync. */
+	SYNC = 'sync',
+	/** A step of a ramp started with `rampVolume`. */
+	RAMP = 'ramp',
+	/** Restored by the volume listener when the output route changed, see `rememberDeviceVolumes`. */
+	ROUTE = 'route'
+}
+
+export interface VolumeTraceEvent {
+	/** Epoch milliseconds. */
+	timestamp: number;
+	streamType: VolumeType;
+	/** Raw index before the change, -1 when unknown. */
+	oldIndex: number;
+	/** Raw index after the change. */
+	newIndex: number;
+	source: VolumeTraceSource;
+}
+
+export interface VolumeTraceResult {
+	/** Maximum number of events kept, older events are dropped first. */
+	capacity: number;
+	/** Oldest first. */
+	events: VolumeTraceEvent[];
+}
+
+// Names of the plugin stream types, indexed by VolumeType
+const STREAM_NAMES: VolumeStreamName[] = ['ring', 'music', 'notification', 'system', 'voice', 'alarm', 'dtmf', 'accessibility'];
+// Names of the routes in binary events, indexed by their native code
+const ROUTE_NAMES: AudioRoute[] = ['speaker', 'wired', 'usb', 'bluetooth', 'hearingAid'];
+
+const BINARY_EVENT_VERSION = 1;
+const BINARY_EVENT_FLAG_FULL = 1;
+const BINARY_EVENT_FLAG_ROUTE = 2;
+const BINARY_EVENT_HEADER_SIZE = 16;
+const BINARY_EVENT_STREAM_SIZE = 3;
+
+/**
+ * Decodes an event sent with `VolumeListenerEncoding.BINARY`, see
+ * `VolumeSubscription.makeBinaryPluginMessage()` on the native side for the layout.
+ */
+function decodeBinaryVolumeEvent(buffer: ArrayBuffer): VolumeListenerDeltaResult {
+	const view = new DataView(buffer);
+	const version = view.getUint8(0);
+	if (version !== BINARY_EVENT_VERSION) {
+		throw new Error(`unsupported volume event version: ${version}`);
+	}
+
+	const flags = view.getUint8(1);
+	const streamMask = view.getUint16(2);
+	const result: VolumeListenerDeltaResult = {
+		seq: view.getUint32(4),
+		timestamp: view.getFloat64(8),
+		full: (flags & BINARY_EVENT_FLAG_FULL) !== 0
+	};
+
+	let offset = BINARY_EVENT_HEADER_SIZE;
+	for (let type = 0; type < STREAM_NAMES.length; type++) {
+		if ((streamMask & (1 << type)) === 0) continue;
+		result[STREAM_NAMES[type]] = view.getUint8(offset + 2);
+		offset += BINARY_EVENT_STREAM_SIZE;
+	}
+
+	if ((flags & BINARY_EVENT_FLAG_ROUTE) !== 0) {
+		result.route = ROUTE_NAMES[view.getUint8(offset)];
+	}
+
+	return result;
+}
+
+/**
+ * Decodes binary events and, with `VolumeListenerFlowControl.ACK`, acknowledges every event
+ * once `successCallback` has handled it.
+ */
+function decodeVolumeEvents<T>(successCallback: (result: T) => void, options: VolumeListenerOptions): (result: T | ArrayBuffer) => void {
+	if (options.flowControl !== VolumeListenerFlowControl.ACK) {
+		return (result) => successCallback(result instanceof ArrayBuffer ? decodeBinaryVolumeEvent(result) as any : result);
+	}
+
+	const ackArgs = options.id !== undefined ? [options.id] : [];
+	return (result) => {
+		try {
+			successCallback(result instanceof ArrayBuffer ? decodeBinaryVolumeEvent(result) as any : result);
+		} finally {
+			cordovaExec<void>(PLUGIN_NAME, 'ackVolumeEvent', undefined, undefined, ackArgs);
+		}
+	};
 }
 
 function unwrapBatchStreamSetResult(result: BatchStreamSetResult): Promise<void> {
@@ -131,10 +457,54 @@ export class AudioManagementCordovaInterface {
 		return invoke(`getVolume`, type);
 	}
 
+	public getMaxVolume(type: VolumeType): Promise<MaxVolumeResult> {
+		return invoke(`getMaxVolume`, type);
+	}
+
+	/**
+	 * @param volume percentage in range [0, 100] when `scaled`, raw index in range [0, maxVolume] otherwise
+	 */
 	public setVolume(type: VolumeType, volume: number, scaled: boolean = true): Promise<void> {
 		return invoke(`setVolume`, type, volume, scaled);
 	}
 
+	/**
+	 * Reads every stream, the audio mode and the notification policy access state in one call.
+	 */
+	public getAudioState(): Promise<AudioStateResult> {
+		return invoke(`getAudioState`);
+	}
+
+	/**
+	 * Calls `successCallback` every time the audio mode changes, whoever changed it.
+	 */
+	public startAudioModeListener(
+		successCallback: (result: AudioModeResult) => void,
+		errorCallback?: (error: any) => void
+	): void {
+		cordovaExec<AudioModeResult>(PLUGIN_NAME, 'startAudioModeListener', successCallback, errorCallback, []);
+	}
+
+	public stopAudioModeListener(): Promise<void> {
+		return invoke('stopAudioModeListener');
+	}
+
+	/**
+	 * Fades the given streams to a target volume natively. Resolves once, when the ramp ends.
+	 * Starting a ramp on a stream replaces the ramp running on it, if any.
+	 * The volume listener reports a single event once the ramp completes, not its steps.
+	 */
+	public rampVolume(config: VolumeRampConfig): Promise<VolumeRampResult> {
+		return invoke('rampVolume', config);
+	}
+
+	/**
+	 * Stops the ramps on the given streams where they are, or every ramp when no stream is given.
+	 */
+	public cancelVolumeRamp(streamTypes?: VolumeType[]): Promise<void> {
+		return invoke('cancelVolumeRamp', streamTypes);
+	}
+
 	public getNotificationPolicyAccessState(): Promise<NotificationPolicyAccessState> {
 		return invoke(`getNotificationPolicyAccessState`);
 	}
@@ -148,6 +518,43 @@ export class AudioManagementCordovaInterface {
 		return invoke(`openNotificationPolicyAccessSettings`);
 	}
 
+	/**
+	 * Stores a profile natively under `name`, replacing the profile with the same name if any.
+	 * Profiles persist across app restarts.
+	 */
+	public saveVolumeProfile(name: string, profile: VolumeProfile): Promise<void> {
+		return invoke('saveVolumeProfile', name, profile);
+	}
+
+	public getVolumeProfiles(): Promise<VolumeProfileListResult> {
+		return invoke('getVolumeProfiles');
+	}
+
+	public deleteVolumeProfile(name: string): Promise<void> {
+		return invoke('deleteVolumeProfile', name);
+	}
+
+	/**
+	 * Applies the stream levels then the audio mode of a saved profile, only writing what differs.
+	 * The volume listener sees it as a single change.
+	 */
+	public applyVolumeProfileForResult(name: string): Promise<BatchStreamSetResult> {
+		return invoke('applyVolumeProfile', name);
+	}
+
+	public applyVolumeProfile(name: string): Promise<void> {
+		return this.applyVolumeProfileForResult(name).then(unwrapBatchStreamSetResult);
+	}
+
+	/**
+	 * Runs the commands in order in a single native call. The volume listener sees the writes
+	 * as a single change. Commands are not atomic: a failed command is reported in its own result
+	 * and does not stop the others.
+	 */
+	public executeTransaction(commands: TransactionCommand[]): Promise<TransactionResult> {
+		return invoke('executeTransaction', commands);
+	}
+
 	public setVolumeBatchForResult(config: BatchStreamSetConfig): Promise<BatchStreamSetResult> {
 		return invoke('setVolumeBatch', config);
 	}
@@ -156,17 +563,53 @@ export class AudioManagementCordovaInterface {
 		return this.setVolumeBatchForResult(config).then(unwrapBatchStreamSetResult);
 	}
 
-	public startVolumeListener(successCallback: (result: VolumeListenerResult) => void, errorCallback?: (error: any) => void): void {
-        cordovaExec<VolumeListenerResult>(PLUGIN_NAME, 'startVolumeListener', successCallback, errorCallback, []);
+	public startVolumeListener(
+		successCallback: (result: VolumeListenerResult) => void,
+		errorCallback?: (error: any) => void,
+		options: VolumeListenerOptions = {}
+	): void {
+        cordovaExec<VolumeListenerResult | ArrayBuffer>(PLUGIN_NAME, 'startVolumeListener', decodeVolumeEvents(successCallback, options), errorCallback, [options]);
     }
 
-    public stopVolumeListener(successCallback?: () => void, errorCallback?: (error: any) => void): void {
-        cordovaExec<void>(PLUGIN_NAME, 'stopVolumeListener', successCallback, errorCallback, []);
+	public startVolumeDeltaListener(
+		successCallback: (result: VolumeListenerDeltaResult) => void,
+		errorCallback?: (error: any) => void,
+		options: VolumeListenerOptions = {}
+	): void {
+		const deltaOptions: VolumeListenerOptions = {...options, payload: VolumeListenerPayload.DELTA};
+		cordovaExec<VolumeListenerDeltaResult | ArrayBuffer>(PLUGIN_NAME, 'startVolumeListener', decodeVolumeEvents(successCallback, deltaOptions), errorCallback, [deltaOptions]);
+	}
+
+	/**
+	 * Stops the subscriber started with the same `id` option, the listener itself stops with the last subscriber.
+	 * The callbacks given to the start call are released and not called again.
+	 */
+    public stopVolumeListener(successCallback?: () => void, errorCallback?: (error: any) => void, id?: string): void {
+        cordovaExec<void>(PLUGIN_NAME, 'stopVolumeListener', successCallback, errorCallback, id !== undefined ? [id] : []);
     }
 
-	public requestVolumeChangeToListener() {
-        return invoke('requestVolumeChangeToListener');
+	/**
+	 * Emits the current state to the listener.
+	 * With delta payloads, nothing is emitted when no stream changed unless `fullResync` is set.
+	 */
+	public requestVolumeChangeToListener(fullResync: boolean = false) {
+        return invoke('requestVolumeChangeToListener', fullResync);
     }
+
+	/**
+	 * @param reset clears every counter and histogram after reading them
+	 */
+	public getDiagnostics(reset: boolean = false): Promise<DiagnosticsResult> {
+		return invoke('getDiagnostics', reset);
+	}
+
+	/**
+	 * Returns the most recent volume changes seen or made by the plugin.
+	 * @param clear empties the trace after reading it
+	 */
+	public getVolumeTrace(clear: boolean = false): Promise<VolumeTraceResult> {
+		return invoke('getVolumeTrace', clear);
+	}
 }
 
 export const AudioManagement = new AudioManagementCordovaInterface();
\ No newline at end of file
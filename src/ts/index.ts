@@ -7,9 +7,37 @@ export {
     NotificationPolicyAccessState,
     StreamSetConfig,
     StreamSetResult,
+    StreamSetState,
+    AudioStreamState,
+    AudioStateResult,
     BatchStreamSetConfig,
     BatchStreamSetResult,
+    VolumeProfile,
+    NamedVolumeProfile,
+    VolumeProfileListResult,
+    TransactionCommand,
+    TransactionCommandResult,
+    TransactionResult,
+    VolumeRampCurve,
+    VolumeRampConfig,
+    VolumeRampResult,
+    VolumeListenerSource,
+    VolumeListenerPayload,
+    VolumeListenerEncoding,
+    VolumeListenerFlowControl,
+    AudioRoute,
+    VolumeStreamName,
+    VolumeSyncRule,
+    VolumeSyncPolicy,
+    VolumeListenerOptions,
     VolumeListenerResult,
+    VolumeListenerDeltaResult,
+    ActionLatencyStats,
+    DiagnosticsCounters,
+    DiagnosticsResult,
+    VolumeTraceSource,
+    VolumeTraceEvent,
+    VolumeTraceResult,
     AudioManagementCordovaInterface,
     AudioManagement
 } from './cordova-plugin-audiomanagement';
\ No newline at end of file